@@ -0,0 +1,240 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: BatchSolver.java
+
+  Purpose: Solves files with one 9x9 puzzle per line on a fixed pool of worker threads, writing the
+  solutions in input order and reporting throughput and per-puzzle latency.
+*/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BatchSolver {
+
+    /**
+     * Number of puzzles per worker thread that may be read ahead of the oldest
+     * unwritten one. Bounds memory on huge inputs while keeping every worker
+     * busy.
+     */
+    public static final int WINDOW_PER_THREAD = 64;
+
+    private final int threads;
+
+    // one exact-cover matrix per worker, reused for every puzzle it solves
+    private final ThreadLocal<DancingLinks> solvers = ThreadLocal.withInitial(() -> new DancingLinks(Board.SIZE));
+
+    private int puzzleCount;
+    private int solvedCount;
+    private int failedCount;
+    private long elapsedNanos;
+    private long[] latencies = new long[1024];
+
+    /**
+     * Creates a batch solver using the given number of worker threads.
+     *
+     * @param threads the number of puzzles solved at once
+     */
+    public BatchSolver(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * The outcome of one puzzle: the line to write and how long it took.
+     */
+    private static class Result {
+        final String line;
+        final boolean solved;
+        final long nanos;
+
+        Result(String line, boolean solved, long nanos) {
+            this.line = line;
+            this.solved = solved;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * Reads puzzles from {@code in}, one per line in the format of
+     * Board.parseLine, and writes one line per puzzle to {@code out} in the
+     * same order: the solution, or the input line unchanged if it is malformed
+     * or has no solution. Blank lines are skipped. Counters and latencies are
+     * reset at the start of every call.
+     *
+     * @param in  the puzzles
+     * @param out where the solutions go
+     * @throws IOException if reading or writing fails
+     */
+    public void solve(BufferedReader in, BufferedWriter out) throws IOException {
+        puzzleCount = 0;
+        solvedCount = 0;
+        failedCount = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Result>> pending = new ArrayDeque<Future<Result>>();
+        long startTime = System.nanoTime();
+        try {
+            String line = in.readLine();
+            while (line != null) {
+                String puzzle = line.trim();
+                if (!puzzle.isEmpty()) {
+                    if (pending.size() == threads * WINDOW_PER_THREAD) {
+                        write(pending.poll(), out);
+                    }
+                    pending.add(pool.submit(() -> solveLine(puzzle)));
+                }
+                line = in.readLine();
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll(), out);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        out.flush();
+        elapsedNanos = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Parses and solves one puzzle line on the calling worker's matrix.
+     */
+    private Result solveLine(String puzzle) {
+        long startTime = System.nanoTime();
+        try {
+            Board board = Board.parseLine(puzzle);
+            if (solvers.get().solve(board)) {
+                return new Result(board.toLine(), true, System.nanoTime() - startTime);
+            }
+        } catch (IllegalArgumentException e) {
+            // malformed line, echoed below like an unsolvable one
+        }
+        return new Result(puzzle, false, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Waits for the oldest pending puzzle, writes its line and records it.
+     */
+    private void write(Future<Result> future, BufferedWriter out) throws IOException {
+        Result result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a puzzle.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("A puzzle could not be solved.", e.getCause());
+        }
+        out.write(result.line);
+        out.newLine();
+        if (puzzleCount == latencies.length) {
+            latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+        }
+        latencies[puzzleCount++] = result.nanos;
+        if (result.solved) {
+            solvedCount++;
+        } else {
+            failedCount++;
+        }
+    }
+
+    /**
+     * Returns the number of puzzles read by the last call to solve().
+     *
+     * @return the number of non-blank input lines
+     */
+    public int getPuzzleCount() {
+        return puzzleCount;
+    }
+
+    /**
+     * Returns the number of puzzles the last call to solve() solved.
+     *
+     * @return the number of solved puzzles
+     */
+    public int getSolvedCount() {
+        return solvedCount;
+    }
+
+    /**
+     * Returns the number of lines the last call to solve() echoed unsolved
+     * because they were malformed or had no solution.
+     *
+     * @return the number of unsolved puzzles
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Returns the puzzles handled per second by the last call to solve(),
+     * including reading and writing.
+     *
+     * @return the throughput in puzzles per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : puzzleCount / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Returns the given percentile of the time spent parsing and solving each
+     * puzzle in the last call to solve(), not counting time queued.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in nanoseconds, or 0 if there were no puzzles
+     */
+    public long getLatency(double percentile) {
+        if (puzzleCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, puzzleCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * puzzleCount) - 1;
+        return sorted[Math.max(0, Math.min(puzzleCount - 1, index))];
+    }
+
+    /**
+     * Returns the counts, throughput and p50/p99 latency of the last call to
+     * solve().
+     *
+     * @return the report
+     */
+    public String report() {
+        return String.format(
+                "Puzzles: %d (solved %d, unsolved %d) on %d threads%nTime: %.1f ms, Throughput: %.0f puzzles/s%n"
+                        + "Latency p50: %.1f us, p99: %.1f us",
+                puzzleCount, solvedCount, failedCount, threads, elapsedNanos / 1e6, getThroughput(),
+                getLatency(50) / 1e3, getLatency(99) / 1e3);
+    }
+
+    /**
+     * Solves every puzzle of a file and writes the solutions to another.
+     * Usage: java BatchSolver <input> <output> [threads], with threads
+     * defaulting to the number of cores.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java BatchSolver <input> <output> [threads]");
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        BatchSolver solver = new BatchSolver(threads);
+        try (BufferedReader in = new BufferedReader(new FileReader(args[0]));
+                BufferedWriter out = new BufferedWriter(new FileWriter(args[1]))) {
+            solver.solve(in, out);
+        }
+        System.out.println(solver.report());
+    }
+}
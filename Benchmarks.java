@@ -0,0 +1,367 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: Benchmarks.java
+
+  Purpose: Benchmarks the solvers, board operations and stacks with warmup, forked JVMs and error
+  bars, on fixed seeded puzzle sets so results can be compared across commits.
+*/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class Benchmarks {
+
+    /**
+     * Seed of the puzzle set. Changing it makes results incomparable with
+     * earlier runs.
+     */
+    public static final long PUZZLE_SEED = 20240403L;
+
+    /**
+     * Number of puzzles in the seeded set; operations cycle through them.
+     */
+    public static final int PUZZLE_COUNT = 32;
+
+    private static final String[] NAMES = { "Sudoku.solve", "SudokuExtension.solve:4", "SudokuExtension.solve:9",
+            "SudokuExtension.solve:16", "SudokuExtension.solve:25", "SudokuExtension.solve:36",
+            "SudokuExtension.solve:49", "SudokuExtension.solve:64", "Reflection2.numSolutions", "Board.validValue",
+            "Board.validSolution", "Board.read", "LinkedList.pushPop", "IntStack.pushPop" };
+
+    private int forks = 3;
+    private int warmupIterations = 5;
+    private int iterations = 5;
+    private long iterationMillis = 500;
+
+    // results are summed into this so the JIT cannot drop the work
+    private static long sink;
+
+    /**
+     * One benchmarked operation, set up once per forked JVM.
+     */
+    private interface Operation {
+        long run();
+    }
+
+    /**
+     * Returns the seeded puzzle set: minimal 9x9 puzzles, each with a unique
+     * solution, as 81 cell values in row-major order with 0 for blanks. The
+     * same seed always gives the same puzzles.
+     *
+     * @return PUZZLE_COUNT puzzles
+     */
+    public static byte[][] puzzles() {
+        Random random = new Random(PUZZLE_SEED);
+        DancingLinks dlx = new DancingLinks(Board.SIZE);
+        byte[][] puzzles = new byte[PUZZLE_COUNT][];
+        for (int p = 0; p < PUZZLE_COUNT; p++) {
+            // a random complete grid, then cells removed in random order while
+            // the solution stays unique
+            Board board = new Board();
+            board.load(GridGenerator.solvedGrid(Board.SIZE, random));
+            List<Integer> cells = new ArrayList<Integer>();
+            for (int i = 0; i < Board.SIZE * Board.SIZE; i++) {
+                cells.add(i);
+            }
+            Collections.shuffle(cells, random);
+            for (int cell : cells) {
+                int row = cell / Board.SIZE;
+                int col = cell % Board.SIZE;
+                int value = board.value(row, col);
+                board.set(row, col, 0);
+                if (dlx.countSolutions(board, 2) != 1) {
+                    board.set(row, col, value);
+                }
+            }
+            puzzles[p] = new byte[Board.SIZE * Board.SIZE];
+            for (int i = 0; i < Board.SIZE * Board.SIZE; i++) {
+                puzzles[p][i] = (byte) board.value(i / Board.SIZE, i % Board.SIZE);
+            }
+        }
+        return puzzles;
+    }
+
+    /**
+     * Returns the seeded puzzle set for boards of the given size: puzzles()
+     * for 9x9, so every 9x9 engine solves the same puzzles, and otherwise
+     * PUZZLE_COUNT random puzzles with 70% of the cells given, which every
+     * size up to 64 solves in milliseconds.
+     *
+     * @param size the side length of the boards
+     * @return PUZZLE_COUNT puzzles
+     */
+    public static byte[][] puzzles(int size) {
+        if (size == Board.SIZE) {
+            return puzzles();
+        }
+        Random random = new Random(PUZZLE_SEED);
+        byte[][] puzzles = new byte[PUZZLE_COUNT][];
+        for (int p = 0; p < PUZZLE_COUNT; p++) {
+            puzzles[p] = GridGenerator.puzzle(size, size * size * 7 / 10, random);
+        }
+        return puzzles;
+    }
+
+    /**
+     * Sets up the named benchmark.
+     */
+    private static Operation setup(String name) {
+        byte[][] puzzles = puzzles();
+        switch (name) {
+            case "Sudoku.solve": {
+                Board board = new Board();
+                Sudoku sudoku = new Sudoku(board);
+                int[] next = new int[1];
+                return () -> {
+                    board.load(puzzles[next[0]++ % PUZZLE_COUNT]);
+                    return sudoku.solve() ? sudoku.getNodeCount() : -1;
+                };
+            }
+            case "SudokuExtension.solve:4":
+            case "SudokuExtension.solve:9":
+            case "SudokuExtension.solve:16":
+            case "SudokuExtension.solve:25":
+            case "SudokuExtension.solve:36":
+            case "SudokuExtension.solve:49":
+            case "SudokuExtension.solve:64": {
+                int size = Integer.parseInt(name.substring(name.indexOf(':') + 1));
+                byte[][] sized = puzzles(size);
+                Grid board = Grid.create(size);
+                SudokuExtension sudoku = new SudokuExtension(board);
+                int[] next = new int[1];
+                return () -> {
+                    board.load(sized[next[0]++ % PUZZLE_COUNT]);
+                    return sudoku.solve() ? sudoku.getNodeCount() : -1;
+                };
+            }
+            case "Reflection2.numSolutions": {
+                Board board = new Board();
+                Reflection2 reflection = new Reflection2(board);
+                int[] next = new int[1];
+                return () -> {
+                    board.load(puzzles[next[0]++ % PUZZLE_COUNT]);
+                    return reflection.numSolutions();
+                };
+            }
+            case "Board.validValue": {
+                Board board = solved(puzzles[0]);
+                int[] next = new int[1];
+                return () -> {
+                    int i = next[0]++ % (Board.SIZE * Board.SIZE * Board.SIZE);
+                    int cell = i / Board.SIZE;
+                    return board.validValue(cell / Board.SIZE, cell % Board.SIZE, 1 + i % Board.SIZE) ? 1 : 0;
+                };
+            }
+            case "Board.validSolution": {
+                Board board = solved(puzzles[0]);
+                return () -> board.validSolution() ? 1 : 0;
+            }
+            case "Board.read": {
+                Board board = new Board();
+                return () -> board.read("board1.txt") ? board.value(0, 0) : -1;
+            }
+            case "LinkedList.pushPop": {
+                LinkedList<Integer> stack = new LinkedList<Integer>();
+                return () -> {
+                    long sum = 0;
+                    for (int i = 0; i < Board.SIZE * Board.SIZE; i++) {
+                        stack.push(i);
+                    }
+                    while (!stack.isEmpty()) {
+                        sum += stack.pop();
+                    }
+                    return sum;
+                };
+            }
+            case "IntStack.pushPop": {
+                IntStack stack = new IntStack(Board.SIZE * Board.SIZE);
+                return () -> {
+                    long sum = 0;
+                    for (int i = 0; i < Board.SIZE * Board.SIZE; i++) {
+                        stack.pushInt(i);
+                    }
+                    while (!stack.isEmpty()) {
+                        sum += stack.popInt();
+                    }
+                    return sum;
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown benchmark " + name + ".");
+        }
+    }
+
+    /**
+     * Returns the solution of a puzzle as a board.
+     */
+    private static Board solved(byte[] puzzle) {
+        Board board = new Board();
+        board.load(puzzle);
+        new DancingLinks(Board.SIZE).solve(board);
+        return board;
+    }
+
+    /**
+     * Runs the operation for about iterationMillis and returns the average
+     * time per call in nanoseconds. Calls are timed in batches so the clock
+     * is read rarely even for very short operations.
+     */
+    private double iteration(Operation operation) {
+        long deadline = System.nanoTime() + iterationMillis * 1000000L;
+        long calls = 0;
+        long batch = 1;
+        long startTime = System.nanoTime();
+        long now = startTime;
+        while (now < deadline) {
+            for (long i = 0; i < batch; i++) {
+                sink += operation.run();
+            }
+            calls += batch;
+            now = System.nanoTime();
+            if (now - startTime < iterationMillis * 100000L) {
+                batch *= 2;
+            }
+        }
+        return (double) (now - startTime) / calls;
+    }
+
+    /**
+     * Runs the warmup and measured iterations of one benchmark in this JVM and
+     * returns the measured times per call in nanoseconds.
+     */
+    private double[] runHere(String name) {
+        Operation operation = setup(name);
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(operation);
+        }
+        double[] results = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            results[i] = iteration(operation);
+        }
+        return results;
+    }
+
+    /**
+     * Runs one benchmark in {@code forks} fresh JVMs, so each starts from a
+     * cold JIT and heap, and returns all of their measured iterations.
+     */
+    private double[] runForked(String name) throws IOException, InterruptedException {
+        List<Double> results = new ArrayList<Double>();
+        for (int f = 0; f < forks; f++) {
+            ProcessBuilder builder = new ProcessBuilder(javaLauncher(), "-Djava.awt.headless=true", "-cp",
+                    System.getProperty("java.class.path"), "Benchmarks", "--fork", name, "-wi",
+                    String.valueOf(warmupIterations), "-i", String.valueOf(iterations), "-t",
+                    String.valueOf(iterationMillis));
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            Process process = builder.start();
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line = br.readLine();
+                while (line != null) {
+                    if (line.startsWith("RESULT ")) {
+                        results.add(Double.parseDouble(line.substring("RESULT ".length())));
+                    }
+                    line = br.readLine();
+                }
+            }
+            if (process.waitFor() != 0) {
+                throw new IOException("Fork for " + name + " failed.");
+            }
+        }
+        double[] array = new double[results.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = results.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Returns the java launcher of the running JVM, to start the forks with.
+     */
+    private static String javaLauncher() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    /**
+     * Formats one row of the results table: the mean time per call in
+     * microseconds with a 99% confidence interval, and the range.
+     */
+    private static String row(String name, double[] nanos) {
+        double mean = 0;
+        for (double value : nanos) {
+            mean += value;
+        }
+        mean /= nanos.length;
+        double variance = 0;
+        for (double value : nanos) {
+            variance += (value - mean) * (value - mean);
+        }
+        double deviation = nanos.length > 1 ? Math.sqrt(variance / (nanos.length - 1)) : 0;
+        double error = 2.576 * deviation / Math.sqrt(nanos.length);
+        double[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("%-26s | %4d | %12.3f | %10.3f | %12.3f | %12.3f", name, nanos.length, mean / 1e3,
+                error / 1e3, sorted[0] / 1e3, sorted[sorted.length - 1] / 1e3);
+    }
+
+    /**
+     * Runs the benchmarks and prints a table of average times per call.
+     * Usage: java Benchmarks [-f forks] [-wi warmups] [-i iterations]
+     * [-t millis per iteration] [name filter regex]. With --fork name it
+     * runs a single benchmark in this JVM and prints its raw results, which
+     * is how the forks are started.
+     */
+    public static void main(String[] args) throws Exception {
+        Benchmarks benchmarks = new Benchmarks();
+        String filter = ".*";
+        String fork = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-f":
+                    benchmarks.forks = Integer.parseInt(args[++i]);
+                    break;
+                case "-wi":
+                    benchmarks.warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    benchmarks.iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    benchmarks.iterationMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--fork":
+                    fork = args[++i];
+                    break;
+                default:
+                    filter = args[i];
+            }
+        }
+
+        if (fork != null) {
+            for (double result : benchmarks.runHere(fork)) {
+                System.out.println("RESULT " + result);
+            }
+            return;
+        }
+
+        System.out.println("Puzzle seed " + PUZZLE_SEED + ", " + benchmarks.forks + " forks x "
+                + benchmarks.iterations + " iterations of " + benchmarks.iterationMillis + " ms after "
+                + benchmarks.warmupIterations + " warmup iterations");
+        System.out.println(String.format("%-26s | %4s | %12s | %10s | %12s | %12s", "Benchmark", "Cnt",
+                "Score us/op", "Error 99%", "Min us/op", "Max us/op"));
+        System.out.println("-".repeat(93));
+        for (String name : NAMES) {
+            if (name.matches(filter)) {
+                System.out.println(row(name, benchmarks.runForked(name)));
+            }
+        }
+    }
+}
@@ -0,0 +1,585 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: BinaryCorpus.java
+
+  Purpose: Reads and writes puzzle corpora in a compact binary format: a 16-byte header followed by
+  fixed-size records of cells packed at the fewest bits their size needs, 4 for 9x9, so any puzzle can
+  be read by offset without parsing text. Also converts to and from the whitespace text format of
+  board1.txt.
+*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+public class BinaryCorpus implements Closeable {
+
+    /**
+     * Bytes before the first record: the magic "SDKB", the format version,
+     * the board size, the bits per cell, the flags and the record count as a
+     * big-endian long.
+     */
+    public static final int HEADER_BYTES = 16;
+
+    /**
+     * The format version written and understood.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Flag set when every record holds the puzzle followed by its solution.
+     */
+    public static final int FLAG_SOLUTIONS = 1;
+
+    private static final byte[] MAGIC = { 'S', 'D', 'K', 'B' };
+
+    private FileChannel channel;
+    private int size;
+    private int flags;
+    private long count;
+    private int gridBytes;
+    private int recordBytes;
+
+    // the records, mapped in pieces of at most PuzzleCorpus.MAX_CHUNK_BYTES
+    // that each hold a whole number of records
+    private MappedByteBuffer[] segments;
+    private long recordsPerSegment;
+
+    /**
+     * Opens a binary corpus and maps its records for reading. Reads use
+     * absolute positions only, so one corpus can be read by several threads
+     * at once.
+     *
+     * @param filename the path to the file
+     * @throws IOException if the file cannot be read or is not a corpus
+     */
+    public BinaryCorpus(String filename) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("File too short for a corpus header: " + filename);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                channel.read(header, header.position());
+            }
+            header.flip();
+            for (byte b : MAGIC) {
+                if (header.get() != b) {
+                    throw new IOException("Not a binary corpus: " + filename);
+                }
+            }
+            int version = header.get();
+            this.size = header.get() & 0xFF;
+            int bits = header.get();
+            this.flags = header.get();
+            this.count = header.getLong();
+            if (version != VERSION) {
+                throw new IOException("Unsupported corpus version " + version + ": " + filename);
+            }
+            int box = (int) Math.sqrt(size);
+            if (size == 0 || box * box != size || bits != bitsPerCell(size)) {
+                throw new IOException("Bad board size " + size + " or cell width " + bits + ": " + filename);
+            }
+            this.gridBytes = gridBytes(size);
+            this.recordBytes = hasSolutions() ? 2 * gridBytes : gridBytes;
+            if (count < 0 || HEADER_BYTES + count * recordBytes > channel.size()) {
+                throw new IOException("Corpus truncated: " + filename);
+            }
+
+            this.recordsPerSegment = Math.max(1, PuzzleCorpus.MAX_CHUNK_BYTES / recordBytes);
+            this.segments = new MappedByteBuffer[(int) ((count + recordsPerSegment - 1) / recordsPerSegment)];
+            for (int s = 0; s < segments.length; s++) {
+                long first = s * recordsPerSegment;
+                long records = Math.min(recordsPerSegment, count - first);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * recordBytes,
+                        records * recordBytes);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of bits a cell of a board of the given size is
+     * packed into: enough for the values 0 to size.
+     *
+     * @param size the side length of the board
+     * @return the bits per cell
+     */
+    public static int bitsPerCell(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+
+    /**
+     * Returns the number of bytes one packed board of the given size takes,
+     * 41 for 9x9.
+     *
+     * @param size the side length of the board
+     * @return the bytes per board
+     */
+    public static int gridBytes(int size) {
+        return (size * size * bitsPerCell(size) + 7) / 8;
+    }
+
+    /**
+     * Returns the side length of the boards in the corpus.
+     *
+     * @return the board size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of puzzles in the corpus.
+     *
+     * @return the record count
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns whether every puzzle is stored with its solution.
+     *
+     * @return true if the corpus has solutions
+     */
+    public boolean hasSolutions() {
+        return (flags & FLAG_SOLUTIONS) != 0;
+    }
+
+    /**
+     * Unpacks puzzle {@code index} into {@code cells}.
+     *
+     * @param index the record number, from 0
+     * @param cells an array of at least size * size entries to fill, in
+     *              row-major order with 0 for blanks
+     */
+    public void read(long index, byte[] cells) {
+        unpack(index, 0, cells);
+    }
+
+    /**
+     * Unpacks the solution of puzzle {@code index} into {@code cells}.
+     *
+     * @param index the record number, from 0
+     * @param cells an array of at least size * size entries to fill
+     * @throws IllegalStateException if the corpus stores puzzles only
+     */
+    public void readSolution(long index, byte[] cells) {
+        if (!hasSolutions()) {
+            throw new IllegalStateException("The corpus has no solutions.");
+        }
+        unpack(index, gridBytes, cells);
+    }
+
+    /**
+     * Unpacks the board starting {@code offset} bytes into the given record.
+     */
+    private void unpack(long index, int offset, byte[] cells) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("No puzzle " + index + " in a corpus of " + count + ".");
+        }
+        MappedByteBuffer segment = segments[(int) (index / recordsPerSegment)];
+        int position = (int) (index % recordsPerSegment) * recordBytes + offset;
+        int bits = bitsPerCell(size);
+        int mask = (1 << bits) - 1;
+        int buffer = 0;
+        int buffered = 0;
+        for (int i = 0; i < size * size; i++) {
+            if (buffered < bits) {
+                buffer = buffer << 8 | (segment.get(position++) & 0xFF);
+                buffered += 8;
+            }
+            buffered -= bits;
+            cells[i] = (byte) (buffer >>> buffered & mask);
+        }
+    }
+
+    /**
+     * Packs the board into {@code out} from {@code offset}, most significant
+     * bit first.
+     */
+    private static void pack(int size, byte[] cells, byte[] out, int offset) {
+        int bits = bitsPerCell(size);
+        int buffer = 0;
+        int buffered = 0;
+        for (int i = 0; i < size * size; i++) {
+            int value = cells[i];
+            if (value < 0 || value > size) {
+                throw new IllegalArgumentException("Cell value out of range: " + value);
+            }
+            buffer = buffer << bits | value;
+            buffered += bits;
+            if (buffered >= 8) {
+                buffered -= 8;
+                out[offset++] = (byte) (buffer >>> buffered);
+            }
+        }
+        if (buffered > 0) {
+            out[offset] = (byte) (buffer << (8 - buffered));
+        }
+    }
+
+    /**
+     * Closes the file. Records already mapped stay readable.
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes a binary corpus record by record. The count in the header is
+     * filled in by close().
+     */
+    public static class Writer implements Closeable {
+        private FileChannel channel;
+        private int size;
+        private boolean solutions;
+        private long count;
+        private byte[] record;
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        /**
+         * Creates or truncates the file and writes the header.
+         *
+         * @param filename  the path to the file
+         * @param size      the side length of the boards
+         * @param solutions whether every puzzle is written with its solution
+         * @throws IOException if the file cannot be written
+         */
+        public Writer(String filename, int size, boolean solutions) throws IOException {
+            int box = (int) Math.sqrt(size);
+            if (size < 1 || size > 255 || box * box != size) {
+                throw new IllegalArgumentException("Size must be a perfect square below 256.");
+            }
+            this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.size = size;
+            this.solutions = solutions;
+            this.record = new byte[(solutions ? 2 : 1) * gridBytes(size)];
+            buffer.put(header());
+        }
+
+        /**
+         * Returns the header for the records written so far.
+         */
+        private ByteBuffer header() {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.put(MAGIC).put((byte) VERSION).put((byte) size).put((byte) bitsPerCell(size))
+                    .put((byte) (solutions ? FLAG_SOLUTIONS : 0)).putLong(count);
+            header.flip();
+            return header;
+        }
+
+        /**
+         * Appends a puzzle to a corpus without solutions.
+         *
+         * @param puzzle size * size values in row-major order, 0 for blanks
+         * @throws IOException if the file cannot be written
+         */
+        public void write(byte[] puzzle) throws IOException {
+            if (solutions) {
+                throw new IllegalStateException("This corpus needs a solution with every puzzle.");
+            }
+            pack(size, puzzle, record, 0);
+            append();
+        }
+
+        /**
+         * Appends a puzzle and its solution to a corpus with solutions.
+         *
+         * @param puzzle   size * size values in row-major order, 0 for blanks
+         * @param solution the solved board
+         * @throws IOException if the file cannot be written
+         */
+        public void write(byte[] puzzle, byte[] solution) throws IOException {
+            if (!solutions) {
+                throw new IllegalStateException("This corpus stores puzzles only.");
+            }
+            pack(size, puzzle, record, 0);
+            pack(size, solution, record, record.length / 2);
+            append();
+        }
+
+        private void append() throws IOException {
+            if (buffer.remaining() < record.length) {
+                flush();
+            }
+            buffer.put(record);
+            count++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Returns the number of puzzles written so far.
+         *
+         * @return the record count
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Writes out the remaining records and the final count, and closes the
+         * file.
+         */
+        public void close() throws IOException {
+            try {
+                flush();
+                ByteBuffer header = header();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads whitespace-separated values, ignoring line breaks, so a file of
+     * boards written one row per line, as board1.txt is, reads as one stream
+     * of cells.
+     */
+    private static class TextCells implements Closeable {
+        private InputStream in;
+
+        TextCells(String filename) throws IOException {
+            this.in = new BufferedInputStream(new FileInputStream(filename), 1 << 16);
+        }
+
+        /**
+         * Fills {@code cells} with the next board's values.
+         *
+         * @return false if the file ended before the first value
+         */
+        boolean next(byte[] cells) throws IOException {
+            for (int i = 0; i < cells.length; i++) {
+                int c = in.read();
+                while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                    c = in.read();
+                }
+                if (c < 0) {
+                    if (i == 0) {
+                        return false;
+                    }
+                    throw new IOException("File ends in the middle of a board.");
+                }
+                int value = 0;
+                while (c >= '0' && c <= '9') {
+                    value = value * 10 + c - '0';
+                    c = in.read();
+                }
+                if (c >= 0 && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                    throw new IOException("Unexpected character '" + (char) c + "' in a board.");
+                }
+                cells[i] = (byte) value;
+            }
+            return true;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Converts boards in the text format, each one row per line with values
+     * separated by spaces and 0 for blanks, into a binary corpus. Blank lines
+     * between boards are ignored.
+     *
+     * @param textFile     the text boards
+     * @param solutionFile the solutions of those boards in the same format,
+     *                     or null to write puzzles only
+     * @param binaryFile   the corpus to write
+     * @param size         the side length of the boards
+     * @return the number of puzzles converted
+     * @throws IOException if a file cannot be read or written, a board is
+     *                     cut short, or the two files hold different numbers
+     *                     of boards
+     */
+    public static long fromText(String textFile, String solutionFile, String binaryFile, int size)
+            throws IOException {
+        byte[] puzzle = new byte[size * size];
+        byte[] solution = new byte[size * size];
+        try (TextCells puzzles = new TextCells(textFile);
+                TextCells solutions = solutionFile == null ? null : new TextCells(solutionFile);
+                Writer writer = new Writer(binaryFile, size, solutionFile != null)) {
+            while (puzzles.next(puzzle)) {
+                if (solutions == null) {
+                    writer.write(puzzle);
+                } else if (solutions.next(solution)) {
+                    writer.write(puzzle, solution);
+                } else {
+                    throw new IOException("Fewer solutions than puzzles in " + solutionFile);
+                }
+            }
+            if (solutions != null && solutions.next(solution)) {
+                throw new IOException("More solutions than puzzles in " + solutionFile);
+            }
+            return writer.count();
+        }
+    }
+
+    /**
+     * Converts a binary corpus into the text format: every board as one row
+     * per line with values separated by spaces, followed by a blank line.
+     *
+     * @param binaryFile the corpus to read
+     * @param textFile   the text file to write
+     * @param solutions  whether to write the solutions instead of the puzzles
+     * @return the number of boards written
+     * @throws IOException if a file cannot be read or written
+     */
+    public static long toText(String binaryFile, String textFile, boolean solutions) throws IOException {
+        try (BinaryCorpus corpus = new BinaryCorpus(binaryFile);
+                BufferedWriter out = new BufferedWriter(new FileWriter(textFile), 1 << 16)) {
+            int size = corpus.getSize();
+            byte[] cells = new byte[size * size];
+            StringBuilder builder = new StringBuilder();
+            for (long i = 0; i < corpus.count(); i++) {
+                if (solutions) {
+                    corpus.readSolution(i, cells);
+                } else {
+                    corpus.read(i, cells);
+                }
+                builder.setLength(0);
+                for (int row = 0; row < size; row++) {
+                    for (int col = 0; col < size; col++) {
+                        if (col > 0) {
+                            builder.append(' ');
+                        }
+                        builder.append(cells[row * size + col]);
+                    }
+                    builder.append('\n');
+                }
+                builder.append('\n');
+                out.write(builder.toString());
+            }
+            return corpus.count();
+        }
+    }
+
+    /**
+     * Converts between the formats, or compares reading the same random
+     * puzzles from text and from a binary corpus. Usage:
+     * java BinaryCorpus encode <text> <binary> [size] [solutionText],
+     * java BinaryCorpus decode <binary> <text> [solutions], or
+     * java BinaryCorpus bench [count] [size].
+     */
+    public static void main(String[] args) throws IOException {
+        String command = args.length > 0 ? args[0] : "bench";
+        if (command.equals("encode") && args.length >= 3) {
+            int size = args.length > 3 ? Integer.parseInt(args[3]) : Board.SIZE;
+            long count = fromText(args[1], args.length > 4 ? args[4] : null, args[2], size);
+            System.out.println("Wrote " + count + " puzzles to " + args[2]);
+        } else if (command.equals("decode") && args.length >= 3) {
+            long count = toText(args[1], args[2], args.length > 3 && Boolean.parseBoolean(args[3]));
+            System.out.println("Wrote " + count + " boards to " + args[2]);
+        } else if (command.equals("bench")) {
+            int count = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+            int size = args.length > 2 ? Integer.parseInt(args[2]) : Board.SIZE;
+            bench(count, size);
+        } else {
+            System.out.println("Usage: java BinaryCorpus encode <text> <binary> [size] [solutionText]");
+            System.out.println("       java BinaryCorpus decode <binary> <text> [solutions]");
+            System.out.println("       java BinaryCorpus bench [count] [size]");
+        }
+    }
+
+    /**
+     * Writes random puzzles in both formats, then times reading every puzzle
+     * from each and reading puzzles at random offsets from the binary one.
+     */
+    private static void bench(int count, int size) throws IOException {
+        Path dir = Files.createTempDirectory("corpus");
+        String text = dir.resolve("puzzles.txt").toString();
+        String binary = dir.resolve("puzzles.bin").toString();
+        String roundTrip = dir.resolve("roundtrip.txt").toString();
+        try {
+            Random rand = new Random(20240403);
+            try (BufferedWriter out = new BufferedWriter(new FileWriter(text))) {
+                for (int i = 0; i < count; i++) {
+                    byte[] cells = GridGenerator.puzzle(size, size * size / 4 + rand.nextInt(size * size / 4), rand);
+                    for (int row = 0; row < size; row++) {
+                        for (int col = 0; col < size; col++) {
+                            out.write((col > 0 ? " " : "") + cells[row * size + col]);
+                        }
+                        out.write('\n');
+                    }
+                    out.write('\n');
+                }
+            }
+            fromText(text, null, binary, size);
+            toText(binary, roundTrip, false);
+            boolean same = Files.mismatch(Paths.get(text), Paths.get(roundTrip)) == -1;
+            System.out.println(String.format("%d puzzles of %dx%d: text %.1f bytes each, binary %d bytes each,"
+                    + " round trip %s", count, size, size, (double) Files.size(Paths.get(text)) / count,
+                    gridBytes(size), same ? "identical" : "DIFFERENT"));
+
+            byte[] cells = new byte[size * size];
+            for (int pass = 0; pass < 3; pass++) {
+                long startTime = System.nanoTime();
+                long givens = 0;
+                try (TextCells in = new TextCells(text)) {
+                    while (in.next(cells)) {
+                        givens += cells[0];
+                    }
+                }
+                double textMs = (System.nanoTime() - startTime) / 1e6;
+
+                startTime = System.nanoTime();
+                try (BinaryCorpus corpus = new BinaryCorpus(binary)) {
+                    for (long i = 0; i < corpus.count(); i++) {
+                        corpus.read(i, cells);
+                        givens -= cells[0];
+                    }
+                }
+                double binaryMs = (System.nanoTime() - startTime) / 1e6;
+
+                startTime = System.nanoTime();
+                try (BinaryCorpus corpus = new BinaryCorpus(binary)) {
+                    for (int i = 0; i < count; i++) {
+                        corpus.read(rand.nextInt(count), cells);
+                    }
+                }
+                double randomMs = (System.nanoTime() - startTime) / 1e6;
+                if (pass == 2) {
+                    System.out.println(String.format("text %.1f ms, binary %.1f ms (%.1fx), binary in random order"
+                            + " %.1f ms%s", textMs, binaryMs, textMs / binaryMs, randomMs,
+                            givens == 0 ? "" : ", MISMATCH"));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(Paths.get(text));
+            Files.deleteIfExists(Paths.get(binary));
+            Files.deleteIfExists(Paths.get(roundTrip));
+            Files.deleteIfExists(dir);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: BinaryCorpusTests.java
+
+  Purpose: Implements tests for the BinaryCorpus format, including packing and unpacking boards of
+           several cell widths, converting to and from text, and rejecting mismatched inputs.
+*/
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class BinaryCorpusTests {
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("corpus-tests");
+        try {
+            // case 1: 9x9 puzzles and solutions, 4 bits a cell, read back unchanged
+            {
+                // setup
+                String binary = dir.resolve("nine.bin").toString();
+                byte[][][] boards = boards(9, 50, new Random(1));
+                write(binary, 9, boards, true);
+
+                // verify
+                int mismatches = mismatches(binary, boards, true);
+                System.out.println(mismatches + " == 0, " + BinaryCorpus.gridBytes(9) + " == 41");
+
+                // test
+                assert mismatches == 0 && BinaryCorpus.gridBytes(9) == 41
+                        : "Error in BinaryCorpus::read(long index, byte[] cells) for 9x9";
+            }
+
+            // case 2: 16x16 puzzles only, 5 bits a cell, read back unchanged
+            {
+                // setup
+                String binary = dir.resolve("sixteen.bin").toString();
+                byte[][][] boards = boards(16, 20, new Random(2));
+                write(binary, 16, boards, false);
+
+                // verify
+                int mismatches = mismatches(binary, boards, false);
+                System.out.println(mismatches + " == 0, " + BinaryCorpus.bitsPerCell(16) + " == 5");
+
+                // test
+                assert mismatches == 0 && BinaryCorpus.bitsPerCell(16) == 5
+                        : "Error in BinaryCorpus::read(long index, byte[] cells) for 16x16";
+            }
+
+            // case 3: 4x4 puzzles and solutions, 3 bits a cell, so boards do
+            // not start on byte boundaries
+            {
+                // setup
+                String binary = dir.resolve("four.bin").toString();
+                byte[][][] boards = boards(4, 30, new Random(3));
+                write(binary, 4, boards, true);
+
+                // verify
+                int mismatches = mismatches(binary, boards, true);
+                System.out.println(mismatches + " == 0, " + BinaryCorpus.bitsPerCell(4) + " == 3");
+
+                // test
+                assert mismatches == 0 && BinaryCorpus.bitsPerCell(4) == 3
+                        : "Error in BinaryCorpus::readSolution(long index, byte[] cells) for 4x4";
+            }
+
+            // case 4: text converted to a corpus and back is unchanged
+            {
+                // setup
+                String text = dir.resolve("puzzles.txt").toString();
+                String solutionText = dir.resolve("solutions.txt").toString();
+                String binary = dir.resolve("text.bin").toString();
+                String puzzlesBack = dir.resolve("puzzles-back.txt").toString();
+                String solutionsBack = dir.resolve("solutions-back.txt").toString();
+                byte[][][] boards = boards(9, 10, new Random(4));
+                writeText(text, 9, boards, 0);
+                writeText(solutionText, 9, boards, 1);
+                long count = BinaryCorpus.fromText(text, solutionText, binary, 9);
+                BinaryCorpus.toText(binary, puzzlesBack, false);
+                BinaryCorpus.toText(binary, solutionsBack, true);
+
+                // verify
+                boolean same = Files.mismatch(Paths.get(text), Paths.get(puzzlesBack)) == -1
+                        && Files.mismatch(Paths.get(solutionText), Paths.get(solutionsBack)) == -1;
+                System.out.println(count + " == 10, " + same + " == true");
+
+                // test
+                assert count == 10 && same : "Error in BinaryCorpus::fromText or BinaryCorpus::toText";
+            }
+
+            // case 5: reading a solution from a corpus without them
+            {
+                // setup
+                String binary = dir.resolve("sixteen.bin").toString();
+                boolean thrown = false;
+                try (BinaryCorpus corpus = new BinaryCorpus(binary)) {
+                    corpus.readSolution(0, new byte[16 * 16]);
+                } catch (IllegalStateException e) {
+                    thrown = true;
+                }
+
+                // verify
+                System.out.println(thrown + " == true");
+
+                // test
+                assert thrown : "Error in BinaryCorpus::readSolution(long index, byte[] cells) without solutions";
+            }
+
+            // case 6: more solutions than puzzles, and fewer, are both errors
+            {
+                // setup
+                byte[][][] boards = boards(9, 4, new Random(5));
+                String puzzles = dir.resolve("three-puzzles.txt").toString();
+                String solutions = dir.resolve("four-solutions.txt").toString();
+                String binary = dir.resolve("mismatched.bin").toString();
+                writeText(puzzles, 9, Arrays.copyOf(boards, 3), 0);
+                writeText(solutions, 9, boards, 1);
+                boolean moreThrown = false;
+                try {
+                    BinaryCorpus.fromText(puzzles, solutions, binary, 9);
+                } catch (IOException e) {
+                    moreThrown = true;
+                }
+                boolean fewerThrown = false;
+                try {
+                    BinaryCorpus.fromText(solutions, puzzles, binary, 9);
+                } catch (IOException e) {
+                    fewerThrown = true;
+                }
+
+                // verify
+                System.out.println(moreThrown + " == true, " + fewerThrown + " == true");
+
+                // test
+                assert moreThrown && fewerThrown
+                        : "Error in BinaryCorpus::fromText(String textFile, String solutionFile, String binaryFile, int size)";
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+
+        System.out.println("Done testing BinaryCorpus!");
+    }
+
+    /**
+     * Returns {@code count} random puzzles of the given size, each paired with
+     * the complete grid it was cut from.
+     */
+    private static byte[][][] boards(int size, int count, Random rand) {
+        byte[][][] boards = new byte[count][][];
+        for (int i = 0; i < count; i++) {
+            byte[] solution = GridGenerator.solvedGrid(size, rand);
+            byte[] puzzle = solution.clone();
+            for (int cell = 0; cell < puzzle.length; cell++) {
+                if (rand.nextBoolean()) {
+                    puzzle[cell] = 0;
+                }
+            }
+            boards[i] = new byte[][] { puzzle, solution };
+        }
+        return boards;
+    }
+
+    /**
+     * Writes the puzzles, and their solutions if asked, to a new corpus.
+     */
+    private static void write(String binary, int size, byte[][][] boards, boolean solutions) throws IOException {
+        try (BinaryCorpus.Writer writer = new BinaryCorpus.Writer(binary, size, solutions)) {
+            for (byte[][] board : boards) {
+                if (solutions) {
+                    writer.write(board[0], board[1]);
+                } else {
+                    writer.write(board[0]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of records of the corpus that differ from the
+     * boards, counting a wrong record count as one.
+     */
+    private static int mismatches(String binary, byte[][][] boards, boolean solutions) throws IOException {
+        int mismatches = 0;
+        try (BinaryCorpus corpus = new BinaryCorpus(binary)) {
+            if (corpus.count() != boards.length || corpus.hasSolutions() != solutions) {
+                mismatches++;
+            }
+            byte[] cells = new byte[corpus.getSize() * corpus.getSize()];
+            for (int i = 0; i < Math.min(corpus.count(), boards.length); i++) {
+                corpus.read(i, cells);
+                if (!Arrays.equals(cells, boards[i][0])) {
+                    mismatches++;
+                }
+                if (solutions) {
+                    corpus.readSolution(i, cells);
+                    if (!Arrays.equals(cells, boards[i][1])) {
+                        mismatches++;
+                    }
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Writes the puzzles ({@code which} 0) or solutions (1) in the text format
+     * toText() produces.
+     */
+    private static void writeText(String text, int size, byte[][][] boards, int which) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(text))) {
+            for (byte[][] board : boards) {
+                for (int row = 0; row < size; row++) {
+                    for (int col = 0; col < size; col++) {
+                        out.write((col > 0 ? " " : "") + board[which][row * size + col]);
+                    }
+                    out.write('\n');
+                }
+                out.write('\n');
+            }
+        }
+    }
+}
@@ -6,7 +6,8 @@
   Name: Board.java
 
   Purpose: Implements a sudoku board and the functionality of reading a txt file and creating
-  a board from it.
+  a board from it. This is the specialized 9x9 Grid: its size and box layout are compile-time
+  constants, so the JIT can fold the index arithmetic that BoardExtension computes at runtime.
 */
 
 import java.io.*;
@@ -25,26 +26,84 @@ import javax.imageio.ImageIO;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
-public class Board {
+public class Board implements Grid {
 
-  private Cell[][] board;
   public static final int SIZE = 9;
-  private Random rand = new Random();
+  private static final Random rand = new Random();
   boolean finished;
 
+  // cell values in row-major order and one lock bit per cell; Cell objects are
+  // only created as views by get(row, col)
+  private byte[] values = new byte[SIZE * SIZE];
+  private long[] locked = new long[(SIZE * SIZE + 63) / 64];
+
+  // box index of every cell in row-major order, unrolled once so set,
+  // candidates and validValue avoid the divisions on the hot path
+  private static final byte[] BOX = {
+      0, 0, 0, 1, 1, 1, 2, 2, 2,
+      0, 0, 0, 1, 1, 1, 2, 2, 2,
+      0, 0, 0, 1, 1, 1, 2, 2, 2,
+      3, 3, 3, 4, 4, 4, 5, 5, 5,
+      3, 3, 3, 4, 4, 4, 5, 5, 5,
+      3, 3, 3, 4, 4, 4, 5, 5, 5,
+      6, 6, 6, 7, 7, 7, 8, 8, 8,
+      6, 6, 6, 7, 7, 7, 8, 8, 8,
+      6, 6, 6, 7, 7, 7, 8, 8, 8 };
+
+  // bit v of rowMask[r] / colMask[c] / boxMask[b] is set while some cell of that
+  // unit holds v; the counts back the masks so duplicates clear correctly
+  private int[] rowMask = new int[SIZE];
+  private int[] colMask = new int[SIZE];
+  private int[] boxMask = new int[SIZE];
+  private byte[] rowCount = new byte[SIZE * (SIZE + 1)];
+  private byte[] colCount = new byte[SIZE * (SIZE + 1)];
+  private byte[] boxCount = new byte[SIZE * (SIZE + 1)];
+
+  /**
+   * Mask with bits 1..SIZE set, i.e. every value a cell may hold.
+   */
+  public static final int ALL_VALUES = ((1 << (SIZE + 1)) - 1) & ~1;
+
   /**
    * Default constructor. Initializes a SIZE x SIZE board with empty cells (value
    * 0).
    */
   public Board() {
-    this.board = new Cell[this.SIZE][this.SIZE];
-    for (int i = 0; i < board.length; i++) {
-      for (int j = 0; j < board[i].length; j++) {
-        board[i][j] = new Cell(i, j, 0);
-      }
+    for (int unit = 0; unit < SIZE; unit++) {
+      rowCount[unit * (SIZE + 1)] = SIZE;
+      colCount[unit * (SIZE + 1)] = SIZE;
+      boxCount[unit * (SIZE + 1)] = SIZE;
     }
   }
 
+  /**
+   * Copy constructor. The new board starts with the same values, locked
+   * cells and finished flag as the given board and is independent of it
+   * afterwards.
+   * 
+   * @param other the board to copy
+   */
+  public Board(Board other) {
+    this.values = other.values.clone();
+    this.locked = other.locked.clone();
+    this.rowMask = other.rowMask.clone();
+    this.colMask = other.colMask.clone();
+    this.boxMask = other.boxMask.clone();
+    this.rowCount = other.rowCount.clone();
+    this.colCount = other.colCount.clone();
+    this.boxCount = other.boxCount.clone();
+    this.finished = other.finished;
+  }
+
+  /**
+   * Returns an independent copy of the board, see the copy constructor.
+   * 
+   * @return the copy
+   */
+  public Board copy() {
+    return new Board(this);
+  }
+
   /**
    * Constructor that initializes the board and reads values from a given filename
    * to populate the board.
@@ -56,31 +115,85 @@ public class Board {
     read(filename);
   }
 
+  /**
+   * Constructor that creates a random puzzle with the given number of locked
+   * cells, taken from a random complete grid so it always has a solution.
+   * 
+   * @param numLocked the number of givens, between 0 and SIZE * SIZE
+   */
   public Board(int numLocked) {
+    this(numLocked, rand);
+  }
+
+  /**
+   * Constructor that creates a random puzzle with the given number of locked
+   * cells from the given source of randomness, so the same seed gives the
+   * same puzzle. See GridGenerator.puzzle.
+   * 
+   * @param numLocked the number of givens, between 0 and SIZE * SIZE
+   * @param rand      the source of randomness
+   */
+  public Board(int numLocked, Random rand) {
     this();
-    int locked = 0;
-    while (locked < numLocked) {
-      int row = rand.nextInt(this.SIZE);
-      int col = rand.nextInt(this.SIZE);
-      int value = 1 + rand.nextInt(9);
-
-      if (this.board[row][col].getValue() == 0 && validValue(row, col, value)) {
-        this.board[row][col].setValue(value);
-        this.board[row][col].setLocked(true);
-        locked++;
+    load(GridGenerator.puzzle(SIZE, numLocked, rand));
+  }
+
+  /**
+   * Creates a board from a single line of SIZE * SIZE characters in row-major
+   * order, the common one-puzzle-per-line format, with '1'-'9' for givens and
+   * '0' or '.' for blanks. Givens are locked.
+   * 
+   * @param line the puzzle line
+   * @return the board the line describes
+   * @throws IllegalArgumentException if the line has the wrong length or an
+   *                                  unknown character
+   */
+  public static Board parseLine(String line) {
+    if (line.length() != SIZE * SIZE) {
+      throw new IllegalArgumentException("Expected " + (SIZE * SIZE) + " characters but got " + line.length() + ".");
+    }
+    Board board = new Board();
+    for (int i = 0; i < SIZE * SIZE; i++) {
+      char c = line.charAt(i);
+      if (c == '.' || c == '0') {
+        continue;
       }
+      if (c < '1' || c > '9') {
+        throw new IllegalArgumentException("Unexpected character '" + c + "' at position " + i + ".");
+      }
+      board.set(i / SIZE, i % SIZE, c - '0');
+      board.set(i / SIZE, i % SIZE, true);
     }
+    return board;
   }
 
   /**
-   * Retrieves the Cell object at a specified location.
+   * Replaces the whole board with the given cell values, in row-major order
+   * with 0 for blanks, locking exactly the non-zero cells. Lets one board be
+   * reused for a stream of puzzles.
    * 
-   * @param row the row index
-   * @param col the column index
-   * @return the Cell object at the specified location
+   * @param cells SIZE * SIZE values between 0 and SIZE
+   */
+  public void load(byte[] cells) {
+    for (int i = 0; i < SIZE * SIZE; i++) {
+      set(i / SIZE, i % SIZE, cells[i]);
+      set(i / SIZE, i % SIZE, cells[i] != 0);
+    }
+    finished = false;
+  }
+
+  /**
+   * Returns the board as a single line of SIZE * SIZE digits in row-major
+   * order, with '0' for blanks, the format parseLine reads.
+   * 
+   * @return the board as one line
    */
-  public Cell get(int row, int col) {
-    return this.board[row][col];
+  public String toLine() {
+    char[] line = new char[SIZE * SIZE];
+    for (int i = 0; i < SIZE * SIZE; i++) {
+      line[i] = (char) ('0' + values[i]);
+    }
+    return new String(line);
   }
 
   /**
@@ -91,7 +204,57 @@ public class Board {
    * @param value the new value to set in the cell
    */
   public void set(int row, int col, int value) {
-    this.board[row][col].setValue(value);
+    int old = this.values[row * SIZE + col];
+    if (old == value) {
+      return;
+    }
+    this.values[row * SIZE + col] = (byte) value;
+    int box = BOX[row * SIZE + col];
+    if (--rowCount[row * (SIZE + 1) + old] == 0) {
+      rowMask[row] &= ~(1 << old);
+    }
+    if (--colCount[col * (SIZE + 1) + old] == 0) {
+      colMask[col] &= ~(1 << old);
+    }
+    if (--boxCount[box * (SIZE + 1) + old] == 0) {
+      boxMask[box] &= ~(1 << old);
+    }
+    rowCount[row * (SIZE + 1) + value]++;
+    colCount[col * (SIZE + 1) + value]++;
+    boxCount[box * (SIZE + 1) + value]++;
+    if (value != 0) {
+      rowMask[row] |= 1 << value;
+      colMask[col] |= 1 << value;
+      boxMask[box] |= 1 << value;
+    }
+  }
+
+  /**
+   * Returns the values that no other cell in the row, column or box of the
+   * given cell currently holds, as a mask with bit v set for each legal v.
+   * The cell's own value is treated as taken.
+   * 
+   * @param row the row index
+   * @param col the column index
+   * @return the mask of legal values for the cell
+   */
+  public int candidates(int row, int col) {
+    return ~(rowMask[row] | colMask[col] | boxMask[BOX[row * SIZE + col]]) & ALL_VALUES;
+  }
+
+  /**
+   * Returns how many empty cells share a row, column or box with the given
+   * cell, counting a cell once per unit it shares. Used to break ties when
+   * choosing the next cell to fill.
+   * 
+   * @param row the row index
+   * @param col the column index
+   * @return the number of empty peers of the cell
+   */
+  public int degree(int row, int col) {
+    int box = BOX[row * SIZE + col];
+    int self = value(row, col) == 0 ? 3 : 0;
+    return rowCount[row * (SIZE + 1)] + colCount[col * (SIZE + 1)] + boxCount[box * (SIZE + 1)] - self;
   }
 
   /**
@@ -102,7 +265,8 @@ public class Board {
    * @return true if the cell is locked, otherwise false
    */
   public boolean isLocked(int row, int col) {
-    return this.board[row][col].isLocked();
+    int index = row * SIZE + col;
+    return (this.locked[index >>> 6] & (1L << index)) != 0;
   }
 
   /**
@@ -112,13 +276,8 @@ public class Board {
    */
   public int numLocked() {
     int lockedCells = 0;
-    for (int i = 0; i < this.board.length; i++) {
-      for (int j = 0; j < this.board[i].length; j++) {
-        if (isLocked(i, j)) {
-          lockedCells++;
-        }
-      }
-
+    for (long word : this.locked) {
+      lockedCells += Long.bitCount(word);
     }
     return lockedCells;
   }
@@ -131,7 +290,7 @@ public class Board {
    * @return the value of the cell at the specified indexes
    */
   public int value(int row, int col) {
-    return this.board[row][col].getValue();
+    return this.values[row * SIZE + col];
   }
 
   /**
@@ -142,7 +301,12 @@ public class Board {
    * @param locked the lock status to set (true or false)
    */
   public void set(int row, int col, boolean locked) {
-    this.board[row][col].setLocked(locked);
+    int index = row * SIZE + col;
+    if (locked) {
+      this.locked[index >>> 6] |= 1L << index;
+    } else {
+      this.locked[index >>> 6] &= ~(1L << index);
+    }
   }
 
   /**
@@ -180,9 +344,9 @@ public class Board {
         // use the line to set various Cells of this Board accordingly
         for (int i = 0; i < arr.length; i++) {
           int value = Integer.parseInt(arr[i]);
-          this.board[row][i].setValue(value);
+          set(row, i, value);
           if (value != 0) {
-            this.board[row][i].setLocked(true);
+            set(row, i, true);
           }
         }
         // assign to line the result of calling the readLine method of your
@@ -208,13 +372,13 @@ public class Board {
    */
   public String toString() {
     StringBuilder builder = new StringBuilder();
-    for (int i = 0; i < this.board.length; i++) {
+    for (int i = 0; i < SIZE; i++) {
       if (i % 3 == 0)
         builder.append("\n");
-      for (int j = 0; j < this.board[i].length; j++) {
+      for (int j = 0; j < SIZE; j++) {
         if (j % 3 == 0)
           builder.append("|");
-        builder.append(this.board[i][j].getValue()).append(" ");
+        builder.append(value(i, j)).append(" ");
       }
       builder.append("|\n");
     }
@@ -222,6 +386,15 @@ public class Board {
     return builder.toString();
   }
 
+  /**
+   * Returns the size of the board (both the number of rows and columns).
+   * 
+   * @return the size of the board
+   */
+  public int getSize() {
+    return SIZE;
+  }
+
   /**
    * Returns the number of columns in the board.
    * 
@@ -240,34 +413,32 @@ public class Board {
     return this.SIZE;
   }
 
+  /**
+   * Checks whether no other cell in the row, column or box of the given cell
+   * holds the value. Runs in constant time off the per-unit value counts.
+   * 
+   * @param row   the row index
+   * @param col   the column index
+   * @param value the value to check
+   * @return true if the value can be placed, otherwise false
+   */
   public boolean validValue(int row, int col, int value) {
-    for (int i = 0; i < board.length; i++) {
-      if (i != col && value(row, i) == value)
-        return false;
-      if (i != row && value(i, col) == value)
-        return false;
+    if (value < 0 || value > SIZE) {
+      return true;
     }
+    int self = value(row, col) == value ? 1 : 0;
+    int box = BOX[row * SIZE + col];
+    return rowCount[row * (SIZE + 1) + value] == self
+        && colCount[col * (SIZE + 1) + value] == self
+        && boxCount[box * (SIZE + 1) + value] == self;
+  }
 
-    int startRow = (row / 3) * 3;
-    int startCol = (col / 3) * 3;
-    for (int i = startRow; i < startRow + 3; i++) {
-      for (int j = startCol; j < startCol + 3; j++) {
-        if ((i != row || j != col) && value(i, j) == value)
-          return false;
-      }
-    }
-    return true;
+  public boolean isFinished() {
+    return finished;
   }
 
-  public boolean validSolution() {
-    for (int i = 0; i < this.board.length; i++) {
-      for (int j = 0; j < this.board.length; j++) {
-        if (!validValue(i, j, value(i, j))) {
-          return false;
-        }
-      }
-    }
-    return true;
+  public void setFinished(boolean finished) {
+    this.finished = finished;
   }
 
   public void draw(Graphics g, int scale) {
@@ -2,7 +2,8 @@
   Author: Vishnu Varadhan
   Date: 4/3/2024
   Name: BoardExtension.java
-  Purpose: Extends the functionality of the Board class to support dynamic board sizes based on perfect squares.
+  Purpose: The general Grid for any perfect-square size, with the box layout computed at runtime. 9x9
+  boards use the specialized Board instead, see Grid.create.
 */
 
 import java.io.*;
@@ -22,13 +23,31 @@ import javax.imageio.ImageIO;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
-public class BoardExtension {
-    private Cell[][] board;
-    private Random rand = new Random();
+public class BoardExtension implements Grid {
+    private static final Random rand = new Random();
     protected boolean finished;
     private int size;
     private int subGridSize;
 
+    // cell values in row-major order and one lock bit per cell; Cell objects are
+    // only created as views by get(row, col)
+    private byte[] values;
+    private long[] locked;
+
+    // bit v of rowMask[r] / colMask[c] / boxMask[b] is set while some cell of that
+    // unit holds v; the counts back the masks so duplicates clear correctly
+    private int[] rowMask;
+    private int[] colMask;
+    private int[] boxMask;
+    private byte[] rowCount;
+    private byte[] colCount;
+    private byte[] boxCount;
+
+    /**
+     * Largest board size whose values fit in the int candidate masks.
+     */
+    public static final int MAX_MASK_SIZE = 30;
+
     /**
      * Constructs a board of given size, ensuring it's a perfect square.
      */
@@ -38,10 +57,45 @@ public class BoardExtension {
         }
         this.size = size;
         this.subGridSize = (int) Math.sqrt(size);
-        this.board = new Cell[this.size][this.size];
+        this.values = new byte[this.size * this.size];
+        this.locked = new long[(this.size * this.size + 63) / 64];
+        this.rowMask = new int[this.size];
+        this.colMask = new int[this.size];
+        this.boxMask = new int[this.size];
+        this.rowCount = new byte[this.size * (this.size + 1)];
+        this.colCount = new byte[this.size * (this.size + 1)];
+        this.boxCount = new byte[this.size * (this.size + 1)];
         initializeBoard();
     }
 
+    /**
+     * Constructs a copy of the given board with the same size, values, locked
+     * cells and finished flag. The copy is independent of the original
+     * afterwards.
+     */
+    public BoardExtension(BoardExtension other) {
+        this.size = other.size;
+        this.subGridSize = other.subGridSize;
+        this.values = other.values.clone();
+        this.locked = other.locked.clone();
+        this.rowMask = other.rowMask.clone();
+        this.colMask = other.colMask.clone();
+        this.boxMask = other.boxMask.clone();
+        this.rowCount = other.rowCount.clone();
+        this.colCount = other.colCount.clone();
+        this.boxCount = other.boxCount.clone();
+        this.finished = other.finished;
+    }
+
+    /**
+     * Returns an independent copy of the board, see the copy constructor.
+     *
+     * @return the copy
+     */
+    public BoardExtension copy() {
+        return new BoardExtension(this);
+    }
+
     /**
      * Constructs a board from a file with a given size.
      */
@@ -51,22 +105,36 @@ public class BoardExtension {
     }
 
     /**
-     * Constructs a board of given size with a specified number of locked cells.
+     * Constructs a random puzzle of given size with a specified number of
+     * locked cells, taken from a random complete grid so it always has a
+     * solution.
      */
     public BoardExtension(int size, int numLocked) {
+        this(size, numLocked, rand);
+    }
+
+    /**
+     * Constructs a random puzzle of given size with a specified number of
+     * locked cells from the given source of randomness, so the same seed gives
+     * the same puzzle. See GridGenerator.puzzle.
+     */
+    public BoardExtension(int size, int numLocked, Random rand) {
         this(size);
-        int locked = 0;
-        while (locked < numLocked) {
-            int row = rand.nextInt(this.size);
-            int col = rand.nextInt(this.size);
-            int value = 1 + rand.nextInt(9);
-
-            if (this.board[row][col].getValue() == 0 && validValue(row, col, value)) {
-                this.board[row][col].setValue(value);
-                this.board[row][col].setLocked(true);
-                locked++;
-            }
+        load(GridGenerator.puzzle(size, numLocked, rand));
+    }
+
+    /**
+     * Replaces the whole board with the given cell values, in row-major order
+     * with 0 for blanks, locking exactly the non-zero cells.
+     * 
+     * @param cells size * size values between 0 and size
+     */
+    public void load(byte[] cells) {
+        for (int i = 0; i < this.size * this.size; i++) {
+            set(i / this.size, i % this.size, cells[i]);
+            set(i / this.size, i % this.size, cells[i] != 0);
         }
+        finished = false;
     }
 
     /**
@@ -81,24 +149,13 @@ public class BoardExtension {
      * Initializes the board with empty cells.
      */
     private void initializeBoard() {
-        for (int i = 0; i < this.size; i++) {
-            for (int j = 0; j < this.size; j++) {
-                board[i][j] = new Cell(i, j, 0);
-            }
+        for (int unit = 0; unit < this.size; unit++) {
+            rowCount[unit * (this.size + 1)] = (byte) this.size;
+            colCount[unit * (this.size + 1)] = (byte) this.size;
+            boxCount[unit * (this.size + 1)] = (byte) this.size;
         }
     }
 
-    /**
-     * Retrieves a cell object from a specified location on the board.
-     * 
-     * @param row the row index of the cell
-     * @param col the column index of the cell
-     * @return the Cell object at the specified location
-     */
-    public Cell get(int row, int col) {
-        return this.board[row][col];
-    }
-
     /**
      * Returns the size of the board (both the number of rows and columns).
      * 
@@ -109,32 +166,78 @@ public class BoardExtension {
     }
 
     /**
-     * Returns the number of rows in the board.
+     * Sets the value of a cell at a specified location on the board.
      * 
-     * @return the number of rows
+     * @param row   the row index of the cell
+     * @param col   the column index of the cell
+     * @param value the value to set the cell to
      */
-    public int getRows() {
-        return this.size;
+    public void set(int row, int col, int value) {
+        int old = this.values[row * this.size + col];
+        if (old == value) {
+            return;
+        }
+        this.values[row * this.size + col] = (byte) value;
+        int box = boxIndex(row, col);
+        int stride = this.size + 1;
+        if (--rowCount[row * stride + old] == 0) {
+            rowMask[row] &= ~(1 << old);
+        }
+        if (--colCount[col * stride + old] == 0) {
+            colMask[col] &= ~(1 << old);
+        }
+        if (--boxCount[box * stride + old] == 0) {
+            boxMask[box] &= ~(1 << old);
+        }
+        rowCount[row * stride + value]++;
+        colCount[col * stride + value]++;
+        boxCount[box * stride + value]++;
+        if (value != 0) {
+            rowMask[row] |= 1 << value;
+            colMask[col] |= 1 << value;
+            boxMask[box] |= 1 << value;
+        }
     }
 
     /**
-     * Returns the number of columns in the board.
+     * Returns the values that no other cell in the row, column or sub-grid of
+     * the given cell currently holds, as a mask with bit v set for each legal v.
+     * The cell's own value is treated as taken. Only available for boards up to
+     * {@link #MAX_MASK_SIZE}.
      * 
-     * @return the number of columns
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     * @return the mask of legal values for the cell
      */
-    public int getCols() {
-        return this.size;
+    public int candidates(int row, int col) {
+        if (this.size > MAX_MASK_SIZE) {
+            throw new UnsupportedOperationException("Candidate masks only support sizes up to " + MAX_MASK_SIZE);
+        }
+        int all = ((1 << (this.size + 1)) - 1) & ~1;
+        return ~(rowMask[row] | colMask[col] | boxMask[boxIndex(row, col)]) & all;
     }
 
     /**
-     * Sets the value of a cell at a specified location on the board.
+     * Returns how many empty cells share a row, column or sub-grid with the
+     * given cell, counting a cell once per unit it shares. Used to break ties
+     * when choosing the next cell to fill.
      * 
-     * @param row   the row index of the cell
-     * @param col   the column index of the cell
-     * @param value the value to set the cell to
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     * @return the number of empty peers of the cell
      */
-    public void set(int row, int col, int value) {
-        this.board[row][col].setValue(value);
+    public int degree(int row, int col) {
+        int stride = this.size + 1;
+        int self = value(row, col) == 0 ? 3 : 0;
+        return rowCount[row * stride] + colCount[col * stride] + boxCount[boxIndex(row, col) * stride] - self;
+    }
+
+    /**
+     * Returns the index of the sub-grid containing the given cell, counting
+     * sub-grids in row-major order.
+     */
+    private int boxIndex(int row, int col) {
+        return (row / subGridSize) * subGridSize + col / subGridSize;
     }
 
     /**
@@ -145,7 +248,8 @@ public class BoardExtension {
      * @return true if the cell is locked, false otherwise
      */
     public boolean isLocked(int row, int col) {
-        return this.board[row][col].isLocked();
+        int index = row * this.size + col;
+        return (this.locked[index >>> 6] & (1L << index)) != 0;
     }
 
     /**
@@ -155,12 +259,8 @@ public class BoardExtension {
      */
     public int numLocked() {
         int lockedCells = 0;
-        for (int i = 0; i < this.size; i++) {
-            for (int j = 0; j < this.size; j++) {
-                if (isLocked(i, j)) {
-                    lockedCells++;
-                }
-            }
+        for (long word : this.locked) {
+            lockedCells += Long.bitCount(word);
         }
         return lockedCells;
     }
@@ -173,7 +273,7 @@ public class BoardExtension {
      * @return the value of the cell
      */
     public int value(int row, int col) {
-        return this.board[row][col].getValue();
+        return this.values[row * this.size + col];
     }
 
     /**
@@ -184,12 +284,18 @@ public class BoardExtension {
      * @param locked the lock status to set (true or false)
      */
     public void set(int row, int col, boolean locked) {
-        this.board[row][col].setLocked(locked);
+        int index = row * this.size + col;
+        if (locked) {
+            this.locked[index >>> 6] |= 1L << index;
+        } else {
+            this.locked[index >>> 6] &= ~(1L << index);
+        }
     }
 
     /**
      * Checks if a given value can be placed at a specified location without
-     * violating Sudoku rules.
+     * violating Sudoku rules. Runs in constant time off the per-unit value
+     * counts.
      * 
      * @param row   the row index to check
      * @param col   the column index to check
@@ -197,73 +303,22 @@ public class BoardExtension {
      * @return true if the value can be placed, false otherwise
      */
     public boolean validValue(int row, int col, int value) {
-        for (int i = 0; i < this.size; i++) {
-            if (i != col && value(row, i) == value)
-                return false;
-            if (i != row && value(i, col) == value)
-                return false;
-        }
-
-        int startRow = (row / subGridSize) * subGridSize;
-        int startCol = (col / subGridSize) * subGridSize;
-        for (int i = startRow; i < startRow + subGridSize; i++) {
-            for (int j = startCol; j < startCol + subGridSize; j++) {
-                if ((i != row || j != col) && value(i, j) == value)
-                    return false;
-            }
+        if (value < 0 || value > this.size) {
+            return true;
         }
-        return true;
+        int self = value(row, col) == value ? 1 : 0;
+        int stride = this.size + 1;
+        return rowCount[row * stride + value] == self
+                && colCount[col * stride + value] == self
+                && boxCount[boxIndex(row, col) * stride + value] == self;
     }
 
-    /**
-     * Validates if the current board configuration is a valid Sudoku solution.
-     * 
-     * @return true if the solution is valid, false otherwise
-     */
-    public boolean validSolution() {
-        for (int i = 0; i < this.size; i++) {
-            for (int j = 0; j < this.size; j++) {
-                if (!validValue(i, j, value(i, j))) {
-                    return false;
-                }
-            }
-        }
-        return true;
+    public boolean isFinished() {
+        return finished;
     }
 
-    /**
-     * Reads board data from a file and initializes the board accordingly.
-     * Each value read is set on the board and locked if not zero.
-     *
-     * @param filename the path to the file containing the board configuration
-     * @return true if the file was read successfully, false otherwise
-     */
-    public boolean read(String filename) {
-        File file = new File(filename);
-        if (!file.exists()) {
-            System.err.println("File does not exist: " + filename);
-            return false;
-        }
-
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            int row = 0;
-            while ((line = br.readLine()) != null && row < this.size) {
-                String[] values = line.trim().split("\\s+");
-                for (int col = 0; col < this.size && col < values.length; col++) {
-                    int value = Integer.parseInt(values[col]);
-                    this.board[row][col].setValue(value);
-                    if (value != 0) {
-                        this.board[row][col].setLocked(true);
-                    }
-                }
-                row++;
-            }
-            return true;
-        } catch (IOException e) {
-            System.err.println("Error reading board configuration: " + e.getMessage());
-            return false;
-        }
+    public void setFinished(boolean finished) {
+        this.finished = finished;
     }
 
     /**
@@ -293,7 +348,7 @@ public class BoardExtension {
 
                     builder.append("| ");
                 }
-                builder.append(this.board[i][j].getValue()).append(" ");
+                builder.append(value(i, j)).append(" ");
             }
             builder.append("|\n");
         }
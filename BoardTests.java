@@ -17,6 +17,11 @@ public class BoardTests {
         testValueSetting();
         testLockingMechanism();
         testValidValue();
+        testValidSolution();
+        testCandidateMasks();
+        testGridFactory();
+        testCanonicalForm();
+        testCanonicalFallback();
     }
 
     /**
@@ -79,4 +84,119 @@ public class BoardTests {
         boolean validValueResult = board.validValue(0, 0, 5);
         System.out.println("Valid Value Checking: " + (validValueResult ? "PASS" : "FAIL"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that a solved board passes the solution check and that the same
+     * board with a single blank does not.
+     */
+    private static void testValidSolution() {
+        System.out.println("Testing valid solution checking...");
+        Board board = new Board("board1.txt");
+        new DancingLinks(Board.SIZE).solve(board);
+        boolean solvedPasses = board.validSolution();
+        board.set(4, 4, 0);
+        boolean blankFails = !board.validSolution();
+        System.out.println("Valid Solution Checking: " + (solvedPasses && blankFails ? "PASS" : "FAIL"));
+    }
+
+    /**
+     * Tests that the candidate masks follow values being set and cleared,
+     * including when a unit briefly holds a duplicate.
+     */
+    private static void testCandidateMasks() {
+        System.out.println("Testing candidate masks...");
+        Board board = new Board();
+        board.set(0, 0, 5);
+        board.set(4, 1, 7);
+        board.set(1, 8, 5);
+        boolean masksCorrect = board.candidates(0, 1) == (Board.ALL_VALUES & ~(1 << 5) & ~(1 << 7))
+                && !board.validValue(0, 1, 5) && board.validValue(8, 7, 5);
+        board.set(1, 8, 0);
+        masksCorrect = masksCorrect && (board.candidates(0, 1) & (1 << 5)) == 0;
+        board.set(0, 3, 5);
+        board.set(0, 0, 0);
+        masksCorrect = masksCorrect && (board.candidates(0, 1) & (1 << 5)) == 0;
+        board.set(0, 3, 0);
+        masksCorrect = masksCorrect && (board.candidates(0, 1) & (1 << 5)) != 0 && board.validValue(0, 1, 5);
+        System.out.println("Candidate Masks: " + (masksCorrect ? "PASS" : "FAIL"));
+    }
+
+    /**
+     * Tests that Grid.create picks the specialized Board for 9x9 and that it
+     * agrees with the general BoardExtension on the same puzzle, copies
+     * included.
+     */
+    private static void testGridFactory() {
+        System.out.println("Testing grid factory...");
+        Grid board = Grid.create(9);
+        Grid general = new BoardExtension(9);
+        byte[] puzzle = GridGenerator.puzzle(9, 30, new java.util.Random(7));
+        board.load(puzzle);
+        general.load(puzzle);
+        boolean consistent = board instanceof Board && Grid.create(16) instanceof BoardExtension
+                && board.numLocked() == general.numLocked();
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                consistent = consistent && board.value(i, j) == general.value(i, j)
+                        && board.candidates(i, j) == general.candidates(i, j)
+                        && board.degree(i, j) == general.degree(i, j)
+                        && board.isLocked(i, j) == general.isLocked(i, j);
+            }
+        }
+        Grid copy = board.copy();
+        copy.set(0, 0, copy.value(0, 0) == 0 ? 1 : 0);
+        consistent = consistent && copy instanceof Board && copy.value(0, 0) != board.value(0, 0);
+        board.setFinished(true);
+        general.setFinished(true);
+        consistent = consistent && board.copy().isFinished() && general.copy().isFinished()
+                && !copy.isFinished();
+        System.out.println("Grid Factory: " + (consistent ? "PASS" : "FAIL"));
+    }
+
+    /**
+     * Tests that a puzzle and a random symmetric image of it share a canonical
+     * form, and that solving the canonical puzzle solves the original through
+     * the transform.
+     */
+    private static void testCanonicalForm() {
+        System.out.println("Testing canonical form...");
+        java.util.Random rand = new java.util.Random(11);
+        Board board = new Board();
+        board.load(GridGenerator.puzzle(9, 28, rand));
+        Grid image = GridTransform.random(9, rand).apply(board);
+        Canonicalizer canonicalizer = new Canonicalizer(9);
+        Canonicalizer.Form form = canonicalizer.canonicalize(board);
+        boolean consistent = form.getKey().equals(canonicalizer.canonicalize(image).getKey());
+
+        Board canonical = new Board();
+        canonical.load(form.getCells());
+        consistent = consistent && new Sudoku(canonical).solve();
+        form.getTransform().solveFrom(board, canonical);
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                consistent = consistent && board.value(i, j) != 0;
+            }
+        }
+        consistent = consistent && board.validSolution() && board.numLocked() == 28;
+        System.out.println("Canonical Form: " + (consistent ? "PASS" : "FAIL"));
+    }
+
+    /**
+     * Tests that complete and nearly complete 16x16 grids, which have too many
+     * equally small placements to canonicalize, get a relabeled form whose
+     * transform still maps back to the grid.
+     */
+    private static void testCanonicalFallback() {
+        System.out.println("Testing canonical form fallback...");
+        java.util.Random rand = new java.util.Random(12);
+        Canonicalizer canonicalizer = new Canonicalizer(16);
+        boolean consistent = true;
+        for (int clues : new int[] { 254, 256 }) {
+            byte[] cells = GridGenerator.puzzle(16, clues, rand);
+            Canonicalizer.Form form = canonicalizer.canonicalize(cells);
+            consistent = consistent && !form.isCanonical()
+                    && java.util.Arrays.equals(form.getTransform().invert(form.getCells()), cells);
+        }
+        System.out.println("Canonical Form Fallback: " + (consistent ? "PASS" : "FAIL"));
+    }
+}
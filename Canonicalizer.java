@@ -0,0 +1,715 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: Canonicalizer.java
+
+  Purpose: Finds the canonical form of a puzzle under the full sudoku symmetry group (transposition,
+  band and stack swaps, row and column swaps within them, digit relabeling), so puzzles that are the
+  same up to symmetry get the same key and need solving only once.
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Canonicalizer {
+
+    /**
+     * The canonical form of a puzzle: its cells, their packed key and the
+     * transform taking the puzzle to them.
+     */
+    public static final class Form {
+        private final byte[] cells;
+        private final SolutionCache.Key key;
+        private final GridTransform transform;
+        private final boolean canonical;
+
+        private Form(byte[] cells, SolutionCache.Key key, GridTransform transform, boolean canonical) {
+            this.cells = cells;
+            this.key = key;
+            this.transform = transform;
+            this.canonical = canonical;
+        }
+
+        /**
+         * Returns the canonical puzzle, the same for every puzzle equivalent
+         * to this one.
+         *
+         * @return size * size values in row-major order, 0 for blanks
+         */
+        public byte[] getCells() {
+            return cells.clone();
+        }
+
+        /**
+         * Returns the canonical puzzle packed as a SolutionCache key.
+         *
+         * @return the key
+         */
+        public SolutionCache.Key getKey() {
+            return key;
+        }
+
+        /**
+         * Returns a transform taking the puzzle to its canonical form. Its
+         * invert() maps a solution of the canonical puzzle back to one of
+         * the puzzle.
+         *
+         * @return the transform
+         */
+        public GridTransform getTransform() {
+            return transform;
+        }
+
+        /**
+         * Returns whether this is the canonical form. If not, it is the puzzle
+         * with its digits relabeled in the order they first appear, which
+         * is still an image of the puzzle but may differ between equivalent
+         * puzzles, see MAX_STATES.
+         *
+         * @return true for the canonical form
+         */
+        public boolean isCanonical() {
+            return canonical;
+        }
+    }
+
+    /**
+     * One way of placing the rows chosen so far that gives the smallest
+     * canonical rows seen. Columns are only ordered as far as those rows
+     * tell them apart: the rest stay in blocks that may still be reordered.
+     */
+    private static final class State {
+        final int frame;
+        final int[] rows;
+        // source column at every position
+        final int[] cols;
+        // split[p] is set if a block of interchangeable columns starts at p
+        final boolean[] split;
+        // tied[s] is set if the stack at s may still be swapped with the one
+        // before it; such stacks are blank in every row so far
+        final boolean[] tied;
+        // canonical digit of every source digit, 0 until it first appears
+        final int[] labels;
+        final int next;
+        final int usedBands;
+
+        State(int frame, int[] rows, int[] cols, boolean[] split, boolean[] tied, int[] labels, int next,
+                int usedBands) {
+            this.frame = frame;
+            this.rows = rows;
+            this.cols = cols;
+            this.split = split;
+            this.tied = tied;
+            this.labels = labels;
+            this.next = next;
+            this.usedBands = usedBands;
+        }
+    }
+
+    /**
+     * A state and the source row to place next, with the column order that
+     * row leaves and the groups of positions still to be permuted, each
+     * permutation giving a different relabeling of the row's new digits.
+     */
+    private static final class Candidate {
+        final State state;
+        final int row;
+        final int[] cols;
+        final boolean[] split;
+        final boolean[] tied;
+        final int[] groups;
+
+        Candidate(State state, int row, int[] cols, boolean[] split, boolean[] tied, int[] groups) {
+            this.state = state;
+            this.row = row;
+            this.cols = cols;
+            this.split = split;
+            this.tied = tied;
+            this.groups = groups;
+        }
+    }
+
+    private final int size;
+    private final int box;
+
+    // the key a cell sorts by: 0 for a blank, its label once it has one, and
+    // NEW for a digit not yet labeled, which takes the next label
+    private final int newKey;
+
+    /**
+     * Largest number of placements of a row kept at once. Rows holding many
+     * digits not seen in earlier rows branch on every order of them, so near
+     * complete grids of size 16 and up go past it and get a form that is not
+     * canonical instead.
+     */
+    public static final int MAX_STATES = 1 << 20;
+
+    // the puzzle as given and transposed, and which of their rows are blank
+    private final byte[][] frames = new byte[2][];
+    private final boolean[][] blankRows;
+
+    // the layout of the row being tried
+    private final int[] keys;
+    private final int[] bestKeys;
+    private final int[] layoutCols;
+    private final boolean[] layoutSplit;
+    private final boolean[] layoutTied;
+    private final int[] segments;
+    private final Integer[] order;
+
+    // groups of the row being tried as (position, slot width, count)
+    // triples, stack groups before cell groups
+    private final int[] stackGroups;
+    private final int[] cellGroups;
+    private int stackGroupCount;
+    private int cellGroupCount;
+
+    /**
+     * Creates a canonicalizer for boards of the given size. It keeps scratch
+     * space between calls, so each thread should have its own.
+     *
+     * @param size the side length of the boards
+     */
+    public Canonicalizer(int size) {
+        int box = (int) Math.sqrt(size);
+        if (box * box != size) {
+            throw new IllegalArgumentException("Size must be a perfect square.");
+        }
+        this.size = size;
+        this.box = box;
+        this.newKey = size + 1;
+        this.blankRows = new boolean[2][size];
+        this.keys = new int[size];
+        this.bestKeys = new int[size];
+        this.layoutCols = new int[size];
+        this.layoutSplit = new boolean[size];
+        this.layoutTied = new boolean[box];
+        this.segments = new int[size];
+        this.order = new Integer[box];
+        this.stackGroups = new int[3 * box];
+        this.cellGroups = new int[3 * size];
+    }
+
+    /**
+     * Returns the canonical form of the board's values.
+     *
+     * @param board the puzzle
+     * @return its canonical form
+     */
+    public Form canonicalize(Grid board) {
+        return canonicalize(GridTransform.cells(board));
+    }
+
+    /**
+     * Returns the canonical form of a puzzle: the smallest, reading row by
+     * row, of all its images under the sudoku symmetries, with blanks as 0
+     * and digits relabeled in the order they first appear. Rows are placed
+     * one at a time, keeping only the placements that make the rows so far
+     * smallest, and columns and digits are fixed only as far as those rows
+     * need. Typical 9x9 puzzles take tens of microseconds; the cost grows
+     * with the number of digits per row. If a row has more than MAX_STATES
+     * equally small placements the search is abandoned and the puzzle is
+     * only relabeled, see Form.isCanonical().
+     *
+     * @param cells size * size values in row-major order, 0 for blanks, with
+     *              no digit twice in a row, column or box
+     * @return its canonical form, or its relabeled form if that is too costly
+     */
+    public Form canonicalize(byte[] cells) {
+        if (cells.length != size * size) {
+            throw new IllegalArgumentException("Expected " + size * size + " cells.");
+        }
+        checkUnits(cells);
+        frames[0] = cells;
+        frames[1] = new byte[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                frames[1][col * size + row] = cells[row * size + col];
+            }
+        }
+        for (int frame = 0; frame < 2; frame++) {
+            for (int row = 0; row < size; row++) {
+                blankRows[frame][row] = true;
+                for (int col = 0; col < size; col++) {
+                    blankRows[frame][row] &= frames[frame][row * size + col] == 0;
+                }
+            }
+        }
+
+        List<State> states = new ArrayList<State>();
+        for (int frame = 0; frame < 2; frame++) {
+            int[] cols = new int[size];
+            boolean[] split = new boolean[size];
+            boolean[] tied = new boolean[box];
+            for (int p = 0; p < size; p++) {
+                cols[p] = p;
+                split[p] = p % box == 0;
+            }
+            Arrays.fill(tied, 1, box, true);
+            states.add(new State(frame, new int[0], cols, split, tied, new int[size + 1], 1, 0));
+        }
+
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        for (int level = 0; level < size; level++) {
+            candidates.clear();
+            boolean haveBest = false;
+            for (State state : states) {
+                for (int row : rows(state, level)) {
+                    int compared = layout(state, row, haveBest);
+                    if (compared > 0) {
+                        continue;
+                    }
+                    if (compared < 0) {
+                        candidates.clear();
+                        System.arraycopy(keys, 0, bestKeys, 0, size);
+                        haveBest = true;
+                    }
+                    candidates.add(candidate(state, row));
+                }
+            }
+            long placements = 0;
+            for (Candidate candidate : candidates) {
+                placements += placements(candidate);
+            }
+            if (placements > MAX_STATES) {
+                return relabeled(cells);
+            }
+            states = new ArrayList<State>();
+            for (Candidate candidate : candidates) {
+                expand(candidate, 0, candidate.groups.length == 0 ? 0 : candidate.groups[2], candidate.cols.clone(),
+                        states);
+            }
+        }
+
+        // digits that never appear take the remaining labels in order
+        State state = states.get(0);
+        int[] labels = state.labels.clone();
+        int next = state.next;
+        for (int digit = 1; digit <= size; digit++) {
+            if (labels[digit] == 0) {
+                labels[digit] = next++;
+            }
+        }
+        GridTransform transform = new GridTransform(state.frame == 1, state.rows, state.cols, labels);
+        byte[] canonical = transform.apply(cells);
+        return new Form(canonical, SolutionCache.key(size, canonical), transform, true);
+    }
+
+    /**
+     * Returns the form canonicalize() falls back on: the puzzle in place with
+     * its digits relabeled in the order they first appear. Its key is an image
+     * of the puzzle, so a puzzle sharing it is equivalent, but equivalent
+     * puzzles do not always share it.
+     */
+    private Form relabeled(byte[] cells) {
+        int[] rows = new int[size];
+        int[] cols = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+            cols[i] = i;
+        }
+        int[] labels = new int[size + 1];
+        int next = 1;
+        for (byte cell : cells) {
+            if (cell != 0 && labels[cell] == 0) {
+                labels[cell] = next++;
+            }
+        }
+        for (int digit = 1; digit <= size; digit++) {
+            if (labels[digit] == 0) {
+                labels[digit] = next++;
+            }
+        }
+        GridTransform transform = new GridTransform(false, rows, cols, labels);
+        byte[] image = transform.apply(cells);
+        return new Form(image, SolutionCache.key(size, image), transform, false);
+    }
+
+    /**
+     * Throws if a digit appears twice in a row, column or box, which the
+     * canonical form assumes never happens.
+     */
+    private void checkUnits(byte[] cells) {
+        long[] rowSeen = new long[size];
+        long[] colSeen = new long[size];
+        long[] boxSeen = new long[size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int value = cells[row * size + col];
+                if (value < 0 || value > size) {
+                    throw new IllegalArgumentException("Cell value out of range: " + value);
+                }
+                if (value == 0) {
+                    continue;
+                }
+                long bit = 1L << (value - 1);
+                int boxIndex = (row / box) * box + col / box;
+                if (((rowSeen[row] | colSeen[col] | boxSeen[boxIndex]) & bit) != 0) {
+                    throw new IllegalArgumentException("Digit " + value + " repeats around row " + row
+                            + ", column " + col + ".");
+                }
+                rowSeen[row] |= bit;
+                colSeen[col] |= bit;
+                boxSeen[boxIndex] |= bit;
+            }
+        }
+    }
+
+    /**
+     * Returns the source rows that may be placed at the given level: any row
+     * of an unused band at the start of a band, otherwise the unused rows of
+     * the current band. Blank rows of a band, and blank bands, can be swapped
+     * without changing the puzzle, so only the first of them is tried.
+     */
+    private int[] rows(State state, int level) {
+        boolean[] blank = blankRows[state.frame];
+        int[] rows = new int[size];
+        int count = 0;
+        int first = level % box == 0 ? 0 : state.rows[level - level % box] / box;
+        int last = level % box == 0 ? box - 1 : first;
+        boolean blankBandTried = false;
+        for (int band = first; band <= last; band++) {
+            if (level % box == 0 && (state.usedBands & (1 << band)) != 0) {
+                continue;
+            }
+            boolean blankBand = true;
+            for (int row = band * box; row < band * box + box; row++) {
+                blankBand &= blank[row];
+            }
+            if (blankBand && level % box == 0) {
+                if (blankBandTried) {
+                    continue;
+                }
+                blankBandTried = true;
+            }
+            boolean blankTried = false;
+            for (int row = band * box; row < band * box + box; row++) {
+                boolean used = false;
+                for (int i = level - level % box; i < level; i++) {
+                    used |= state.rows[i] == row;
+                }
+                if (used || (blank[row] && blankTried)) {
+                    continue;
+                }
+                blankTried |= blank[row];
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Lays the source row out in the smallest order the state's columns
+     * allow, filling keys, the new column order and the groups still to be
+     * permuted. Stops early once the row compares larger than bestKeys.
+     *
+     * @return -1, 0 or 1 as the row is smaller than, equal to or larger than
+     *         bestKeys, -1 if there is none yet
+     */
+    private int layout(State state, int row, boolean haveBest) {
+        byte[] frame = frames[state.frame];
+        int base = row * size;
+        int compared = haveBest ? 0 : -1;
+        stackGroupCount = 0;
+        cellGroupCount = 0;
+        for (int start = 0; start < box;) {
+            int end = start + 1;
+            while (end < box && state.tied[end]) {
+                end++;
+            }
+            if (end - start == 1) {
+                layoutStack(state, frame, base, start * box, start * box);
+                layoutTied[start] = false;
+            } else {
+                layoutTiedStacks(state, frame, base, start, end);
+            }
+            if (compared == 0) {
+                for (int p = start * box; p < end * box; p++) {
+                    if (keys[p] != bestKeys[p]) {
+                        compared = keys[p] < bestKeys[p] ? -1 : 1;
+                        break;
+                    }
+                }
+                if (compared > 0) {
+                    return 1;
+                }
+            }
+            start = end;
+        }
+        return compared;
+    }
+
+    /**
+     * Returns the sort key of a value under the state's labels.
+     */
+    private int key(State state, int value) {
+        return value == 0 ? 0 : state.labels[value] == 0 ? newKey : state.labels[value];
+    }
+
+    /**
+     * Lays out the stack whose columns are at {@code from} at position
+     * {@code to}: each block of interchangeable columns becomes its blanks,
+     * as one block, then its labeled digits in order, then its new digits,
+     * which form a group if there are several.
+     */
+    private void layoutStack(State state, byte[] frame, int base, int from, int to) {
+        int q = to;
+        for (int p = from; p < from + box;) {
+            int end = p + 1;
+            while (end < from + box && !state.split[end]) {
+                end++;
+            }
+            int blanks = q;
+            for (int x = p; x < end; x++) {
+                int col = state.cols[x];
+                if (frame[base + col] == 0) {
+                    layoutCols[q] = col;
+                    keys[q] = 0;
+                    layoutSplit[q] = q == blanks;
+                    q++;
+                }
+            }
+            int labeled = q;
+            for (int x = p; x < end; x++) {
+                int col = state.cols[x];
+                int key = key(state, frame[base + col]);
+                if (key == 0 || key == newKey) {
+                    continue;
+                }
+                int at = q++;
+                while (at > labeled && keys[at - 1] > key) {
+                    keys[at] = keys[at - 1];
+                    layoutCols[at] = layoutCols[at - 1];
+                    at--;
+                }
+                keys[at] = key;
+                layoutCols[at] = col;
+            }
+            for (int x = labeled; x < q; x++) {
+                layoutSplit[x] = true;
+            }
+            int fresh = q;
+            for (int x = p; x < end; x++) {
+                int col = state.cols[x];
+                if (key(state, frame[base + col]) == newKey) {
+                    layoutCols[q] = col;
+                    keys[q] = newKey;
+                    layoutSplit[q] = true;
+                    q++;
+                }
+            }
+            if (q - fresh > 1) {
+                cellGroups[3 * cellGroupCount] = fresh;
+                cellGroups[3 * cellGroupCount + 1] = 1;
+                cellGroups[3 * cellGroupCount + 2] = q - fresh;
+                cellGroupCount++;
+            }
+            p = end;
+        }
+    }
+
+    /**
+     * Lays out a run of stacks that are still interchangeable, smallest first.
+     * Stacks still blank stay tied; equal stacks holding digits form a group.
+     */
+    private void layoutTiedStacks(State state, byte[] frame, int base, int start, int end) {
+        // each tied stack is a single block, so its sorted values are its
+        // layout in it
+        for (int s = start; s < end; s++) {
+            int offset = s * box;
+            for (int x = 0; x < box; x++) {
+                int key = key(state, frame[base + state.cols[offset + x]]);
+                int at = offset + x;
+                while (at > offset && segments[at - 1] > key) {
+                    segments[at] = segments[at - 1];
+                    at--;
+                }
+                segments[at] = key;
+            }
+            order[s - start] = s;
+        }
+        Arrays.sort(order, 0, end - start, (a, b) -> compareSegments(a, b));
+        for (int i = 0; i < end - start; i++) {
+            int s = start + i;
+            layoutStack(state, frame, base, order[i] * box, s * box);
+            boolean same = i > 0 && compareSegments(order[i - 1], order[i]) == 0;
+            boolean blank = segments[order[i] * box + box - 1] == 0;
+            layoutTied[s] = same && blank;
+            if (same && !blank) {
+                // extend the group of the previous stack, or start one
+                int last = 3 * (stackGroupCount - 1);
+                if (stackGroupCount > 0 && stackGroups[last] + stackGroups[last + 2] * box == s * box) {
+                    stackGroups[last + 2]++;
+                } else {
+                    stackGroups[3 * stackGroupCount] = (s - 1) * box;
+                    stackGroups[3 * stackGroupCount + 1] = box;
+                    stackGroups[3 * stackGroupCount + 2] = 2;
+                    stackGroupCount++;
+                }
+            }
+        }
+    }
+
+    private int compareSegments(int a, int b) {
+        for (int x = 0; x < box; x++) {
+            int difference = segments[a * box + x] - segments[b * box + x];
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Saves the layout just computed for the state and row.
+     */
+    private Candidate candidate(State state, int row) {
+        int[] groups = new int[3 * (stackGroupCount + cellGroupCount)];
+        System.arraycopy(stackGroups, 0, groups, 0, 3 * stackGroupCount);
+        System.arraycopy(cellGroups, 0, groups, 3 * stackGroupCount, 3 * cellGroupCount);
+        return new Candidate(state, row, layoutCols.clone(), layoutSplit.clone(), layoutTied.clone(), groups);
+    }
+
+    /**
+     * Returns the number of states the candidate expands into.
+     */
+    private static long placements(Candidate candidate) {
+        long placements = 1;
+        for (int g = 2; g < candidate.groups.length; g += 3) {
+            for (int k = 2; k <= candidate.groups[g]; k++) {
+                placements *= k;
+            }
+        }
+        return placements;
+    }
+
+    /**
+     * Adds a state for every permutation of the candidate's groups, from
+     * group {@code group} on, using Heap's algorithm on the group's first
+     * {@code count} slots.
+     */
+    private void expand(Candidate candidate, int group, int count, int[] cols, List<State> states) {
+        int[] groups = candidate.groups;
+        if (3 * group == groups.length) {
+            states.add(child(candidate, cols));
+            return;
+        }
+        if (count <= 1) {
+            int next = group + 1;
+            expand(candidate, next, 3 * next < groups.length ? groups[3 * next + 2] : 0, cols, states);
+            return;
+        }
+        int position = groups[3 * group];
+        int width = groups[3 * group + 1];
+        expand(candidate, group, count - 1, cols, states);
+        for (int i = 0; i < count - 1; i++) {
+            int other = count % 2 == 0 ? i : 0;
+            for (int x = 0; x < width; x++) {
+                int a = position + other * width + x;
+                int b = position + (count - 1) * width + x;
+                int swap = cols[a];
+                cols[a] = cols[b];
+                cols[b] = swap;
+            }
+            expand(candidate, group, count - 1, cols, states);
+        }
+    }
+
+    /**
+     * Returns the state after placing the candidate's row with the given
+     * column order, labeling its new digits left to right.
+     */
+    private State child(Candidate candidate, int[] cols) {
+        State state = candidate.state;
+        byte[] frame = frames[state.frame];
+        int base = candidate.row * size;
+        int[] labels = state.labels.clone();
+        int next = state.next;
+        for (int p = 0; p < size; p++) {
+            int value = frame[base + cols[p]];
+            if (value != 0 && labels[value] == 0) {
+                labels[value] = next++;
+            }
+        }
+        int[] rows = Arrays.copyOf(state.rows, state.rows.length + 1);
+        rows[state.rows.length] = candidate.row;
+        return new State(state.frame, rows, cols.clone(), candidate.split, candidate.tied, labels, next,
+                state.usedBands | 1 << (candidate.row / box));
+    }
+
+    /**
+     * Canonicalizes every {@code step}th puzzle from {@code first} on with a
+     * canonicalizer of its own.
+     */
+    private static void canonicalizeAll(byte[][] puzzles, int size, int first, int step) {
+        Canonicalizer canonicalizer = new Canonicalizer(size);
+        for (int i = first; i < puzzles.length; i += step) {
+            canonicalizer.canonicalize(puzzles[i]);
+        }
+    }
+
+    /**
+     * Checks that random images of random puzzles canonicalize to the same
+     * key as the puzzles themselves, then prints how many puzzles per minute
+     * one thread and all cores canonicalize. Usage: java Canonicalizer
+     * [count] [size].
+     */
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+        Random rand = new Random(20240403);
+        byte[][] puzzles = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            puzzles[i] = GridGenerator.puzzle(size, size * size / 5 + rand.nextInt(size * size / 5), rand);
+        }
+
+        Canonicalizer canonicalizer = new Canonicalizer(size);
+        int mismatches = 0;
+        for (int i = 0; i < Math.min(count, 2000); i++) {
+            Form form = canonicalizer.canonicalize(puzzles[i]);
+            byte[] image = GridTransform.random(size, rand).apply(puzzles[i]);
+            Form imageForm = canonicalizer.canonicalize(image);
+            if (!form.getKey().equals(imageForm.getKey())
+                    || !Arrays.equals(imageForm.getTransform().invert(imageForm.getCells()), image)) {
+                mismatches++;
+            }
+        }
+        System.out.println("Images with a different canonical form: " + mismatches);
+
+        for (int pass = 0; pass < 2; pass++) {
+            long startTime = System.nanoTime();
+            canonicalizeAll(puzzles, size, 0, 1);
+            long elapsed = System.nanoTime() - startTime;
+            if (pass == 1) {
+                System.out.println(String.format("1 thread:  %.1f us per puzzle, %.0f puzzles per minute",
+                        elapsed / 1e3 / count, count * 60e9 / elapsed));
+            }
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            long startTime = System.nanoTime();
+            List<Future<?>> parts = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                parts.add(pool.submit(() -> canonicalizeAll(puzzles, size, first, threads)));
+            }
+            for (Future<?> part : parts) {
+                part.get();
+            }
+            long elapsed = System.nanoTime() - startTime;
+            System.out.println(String.format("%d threads: %.0f puzzles per minute", threads,
+                    count * 60e9 / elapsed));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
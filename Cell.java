@@ -26,6 +26,8 @@ public class Cell {
     private int col;
     private int value;
     private boolean isLocked;
+    // when set, the cell is a view and value/lock live in the grid
+    private Grid grid;
 
     /**
      * Constructs a Cell object with specified row, column, and value.
@@ -54,6 +56,20 @@ public class Cell {
         this(row, col, value);
         this.isLocked = isLocked;
     }
+
+    /**
+     * Constructs a Cell that views the given location of a grid. Reads and
+     * writes of the value and lock status go straight to the grid.
+     * 
+     * @param grid the grid holding the cell
+     * @param row the row position of the cell
+     * @param col the column position of the cell
+     */
+    public Cell(Grid grid, int row, int col){
+        this.grid = grid;
+        this.row = row;
+        this.col = col;
+    }
     
     /**
      * Returns the row position of the cell.
@@ -79,7 +95,7 @@ public class Cell {
      * @return the value of the cell
      */
     public int getValue(){
-        return this.value;
+        return grid == null ? this.value : grid.value(row, col);
     }
 
     /**
@@ -88,7 +104,11 @@ public class Cell {
      * @param newval the new value to be set
      */
     public void setValue(int newval){
-        this.value = newval;
+        if (grid == null) {
+            this.value = newval;
+        } else {
+            grid.set(row, col, newval);
+        }
     }
 
     /**
@@ -97,7 +117,7 @@ public class Cell {
      * @return true if the cell is locked, false otherwise
      */
     public boolean isLocked(){
-        return isLocked;
+        return grid == null ? isLocked : grid.isLocked(row, col);
     }
 
     /**
@@ -106,7 +126,11 @@ public class Cell {
      * @param lock the lock status to set (true to lock the cell, false to unlock)
      */
     public void setLocked(boolean lock){
-        this.isLocked = lock;
+        if (grid == null) {
+            this.isLocked = lock;
+        } else {
+            grid.set(row, col, lock);
+        }
     }
 
 
@@ -128,7 +152,7 @@ public class Cell {
      * @return a string that describes the cell's value
      */
     public String toString(){
-        return "Cell Value: " + this.value;
+        return "Cell Value: " + getValue();
     }
 
 
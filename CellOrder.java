@@ -0,0 +1,24 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: CellOrder.java
+
+  Purpose: Lists the ways the backtracking solvers can choose which empty cell to fill next.
+*/
+
+public enum CellOrder {
+
+    /**
+     * Fill the first empty cell in row-major order.
+     */
+    ROW_MAJOR,
+
+    /**
+     * Fill the empty cell with the fewest remaining values ("minimum remaining
+     * values"), breaking ties in favour of the cell with the fewest empty peers
+     * so the search keeps working in the most constrained part of the board.
+     */
+    MRV
+}
@@ -0,0 +1,373 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: DancingLinks.java
+
+  Purpose: Solves and counts solutions of Sudoku boards of any perfect-square size by treating them
+  as an exact-cover problem and running Knuth's Algorithm X over a dancing-links matrix.
+*/
+
+public class DancingLinks {
+
+    // node 0 is the root, nodes 1..numColumns are column headers and every
+    // matrix row (cell, value) owns four consecutive nodes after that
+    private static final int ROOT = 0;
+
+    private int size;
+    private int subGridSize;
+    private int numColumns;
+    private int[] left;
+    private int[] right;
+    private int[] up;
+    private int[] down;
+    private int[] column;
+    private int[] columnSize;
+    private boolean[] covered;
+
+    // rows chosen by the search, and the first solution found as cell values
+    private int[] chosen;
+    private int depth;
+    private int[] firstSolution;
+
+    // rows selected for the given cells of the current board, in selection order
+    private int[] givens;
+    private int numGivens;
+
+    private long count;
+    private long limit;
+
+    // limits of the current search, the nodes it has visited and, once it
+    // has stopped early, why
+    private SearchBudget budget;
+    private long nodeCount;
+    private SolveOutcome stopped;
+
+    /**
+     * Builds the full exact-cover matrix for boards of the given size. The
+     * matrix is kept and restored after every board, so one instance can be
+     * reused for any number of boards of that size.
+     * 
+     * @param size the side length of the boards, a perfect square
+     */
+    public DancingLinks(int size) {
+        int sqrt = (int) Math.sqrt(size);
+        if (sqrt * sqrt != size) {
+            throw new IllegalArgumentException("Size must be a perfect square.");
+        }
+        this.size = size;
+        this.subGridSize = sqrt;
+        int cells = size * size;
+        this.numColumns = 4 * cells;
+        int numNodes = 1 + numColumns + 4 * cells * size;
+
+        left = new int[numNodes];
+        right = new int[numNodes];
+        up = new int[numNodes];
+        down = new int[numNodes];
+        column = new int[numNodes];
+        columnSize = new int[numColumns + 1];
+        covered = new boolean[numColumns + 1];
+        chosen = new int[cells];
+        firstSolution = new int[cells];
+        givens = new int[cells];
+
+        for (int c = 0; c <= numColumns; c++) {
+            left[c] = c == 0 ? numColumns : c - 1;
+            right[c] = c == numColumns ? 0 : c + 1;
+            up[c] = c;
+            down[c] = c;
+            column[c] = c;
+        }
+
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            int box = (row / subGridSize) * subGridSize + col / subGridSize;
+            for (int v = 0; v < size; v++) {
+                int first = rowNode(cell * size + v);
+                int[] headers = {
+                        1 + cell,
+                        1 + cells + row * size + v,
+                        1 + 2 * cells + col * size + v,
+                        1 + 3 * cells + box * size + v };
+                for (int k = 0; k < 4; k++) {
+                    int node = first + k;
+                    int c = headers[k];
+                    column[node] = c;
+                    up[node] = up[c];
+                    down[node] = c;
+                    down[up[c]] = node;
+                    up[c] = node;
+                    columnSize[c]++;
+                    left[node] = first + (k + 3) % 4;
+                    right[node] = first + (k + 1) % 4;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the size of the boards this instance handles.
+     * 
+     * @return the side length of the boards
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Fills the empty cells of the board with its first solution, leaving the
+     * board unchanged if there is none.
+     * 
+     * @param board the board to solve, of this instance's size
+     * @return true if a solution was found and written, false otherwise
+     */
+    public boolean solve(Grid board) {
+        return solve(board, SearchBudget.NO_LIMIT, SearchBudget.NO_LIMIT) == SolveOutcome.SOLVED;
+    }
+
+    /**
+     * solve(Grid) within the given time and number of search nodes. The
+     * board is only changed if a solution is found.
+     * 
+     * @param board         the board to solve, of this instance's size
+     * @param timeoutMillis the time the search may take, or SearchBudget.NO_LIMIT
+     * @param maxNodes      the number of nodes it may visit, or SearchBudget.NO_LIMIT
+     * @return how the search ended
+     */
+    public SolveOutcome solve(Grid board, long timeoutMillis, long maxNodes) {
+        run(board, 1, new SearchBudget(timeoutMillis, maxNodes));
+        if (count == 0) {
+            return getOutcome();
+        }
+        for (int cell = 0; cell < size * size; cell++) {
+            if (board.value(cell / size, cell % size) == 0) {
+                board.set(cell / size, cell % size, firstSolution[cell]);
+            }
+        }
+        return SolveOutcome.SOLVED;
+    }
+
+    /**
+     * Counts every solution of the board. The board is not modified.
+     * 
+     * @param board the board to count solutions of, of this instance's size
+     * @return the number of solutions
+     */
+    public long countSolutions(Grid board) {
+        return countSolutions(board, Long.MAX_VALUE);
+    }
+
+    /**
+     * Counts the solutions of the board, stopping as soon as {@code limit}
+     * have been found. The board is not modified.
+     * 
+     * @param board the board to count solutions of, of this instance's size
+     * @param limit the number of solutions after which to stop
+     * @return the number of solutions, at most {@code limit}
+     */
+    public long countSolutions(Grid board, long limit) {
+        return run(board, limit, SearchBudget.unlimited());
+    }
+
+    /**
+     * Counts the solutions of the board within the given time and number of
+     * search nodes, stopping as soon as {@code limit} have been found. If the
+     * search is stopped early the count is only a lower bound; getOutcome()
+     * tells which. The board is not modified.
+     * 
+     * @param board         the board to count solutions of, of this instance's size
+     * @param limit         the number of solutions after which to stop
+     * @param timeoutMillis the time the search may take, or SearchBudget.NO_LIMIT
+     * @param maxNodes      the number of nodes it may visit, or SearchBudget.NO_LIMIT
+     * @return the number of solutions found, at most {@code limit}
+     */
+    public long countSolutions(Grid board, long limit, long timeoutMillis, long maxNodes) {
+        return run(board, limit, new SearchBudget(timeoutMillis, maxNodes));
+    }
+
+    /**
+     * Returns how the last solve or count ended: SOLVED if it found a
+     * solution, UNSATISFIABLE if it searched everything and found none, or
+     * why it was stopped early.
+     * 
+     * @return the outcome of the last search
+     */
+    public SolveOutcome getOutcome() {
+        if (stopped != null) {
+            return stopped;
+        }
+        return count > 0 ? SolveOutcome.SOLVED : SolveOutcome.UNSATISFIABLE;
+    }
+
+    /**
+     * Returns the number of search nodes the last solve or count visited.
+     * 
+     * @return the number of nodes
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Selects the rows of the board's given cells, searches for up to
+     * {@code limit} solutions within the budget and restores the matrix
+     * afterwards.
+     */
+    private long run(Grid board, long limit, SearchBudget budget) {
+        if (board.getSize() != size) {
+            throw new IllegalArgumentException("Board size " + board.getSize() + " does not match " + size);
+        }
+        this.count = 0;
+        this.limit = limit;
+        this.budget = budget;
+        this.nodeCount = 0;
+        this.stopped = null;
+        this.depth = 0;
+        this.numGivens = 0;
+        try {
+            if (selectGivens(board) && limit > 0) {
+                search();
+            }
+        } finally {
+            for (int i = numGivens - 1; i >= 0; i--) {
+                unselect(givens[i]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Selects the matrix row of every filled cell. Returns false if two cells
+     * clash, in which case the board has no solution.
+     */
+    private boolean selectGivens(Grid board) {
+        for (int cell = 0; cell < size * size; cell++) {
+            int value = board.value(cell / size, cell % size);
+            if (value == 0) {
+                continue;
+            }
+            if (value < 0 || value > size) {
+                throw new IllegalArgumentException("Value " + value + " out of range for size " + size);
+            }
+            int node = rowNode(cell * size + value - 1);
+            for (int k = 0; k < 4; k++) {
+                if (covered[column[node + k]]) {
+                    return false;
+                }
+            }
+            select(node);
+            givens[numGivens++] = node;
+        }
+        return true;
+    }
+
+    /**
+     * Algorithm X: cover the column with the fewest rows and try each of them.
+     * Gives up, leaving the reason in {@code stopped}, once the budget runs out.
+     */
+    private void search() {
+        if (right[ROOT] == ROOT) {
+            if (count == 0) {
+                for (int i = 0; i < depth; i++) {
+                    int matrixRow = (chosen[i] - 1 - numColumns) / 4;
+                    firstSolution[matrixRow / size] = matrixRow % size + 1;
+                }
+            }
+            count++;
+            return;
+        }
+        if ((stopped = budget.check(nodeCount)) != null) {
+            return;
+        }
+        nodeCount++;
+
+        int best = right[ROOT];
+        for (int c = right[best]; c != ROOT; c = right[c]) {
+            if (columnSize[c] < columnSize[best]) {
+                best = c;
+            }
+        }
+        if (columnSize[best] == 0) {
+            return;
+        }
+
+        cover(best);
+        for (int node = down[best]; node != best && count < limit && stopped == null; node = down[node]) {
+            chosen[depth++] = node;
+            for (int j = right[node]; j != node; j = right[j]) {
+                cover(column[j]);
+            }
+            search();
+            for (int j = left[node]; j != node; j = left[j]) {
+                uncover(column[j]);
+            }
+            depth--;
+        }
+        uncover(best);
+    }
+
+    /**
+     * Covers every column of the row starting at the given node.
+     */
+    private void select(int node) {
+        int j = node;
+        do {
+            cover(column[j]);
+            j = right[j];
+        } while (j != node);
+    }
+
+    /**
+     * Undoes select() for the row starting at the given node.
+     */
+    private void unselect(int node) {
+        int j = left[node];
+        do {
+            uncover(column[j]);
+            j = left[j];
+        } while (j != left[node]);
+    }
+
+    /**
+     * Removes a column from the header list and every row that uses it from
+     * the other columns.
+     */
+    private void cover(int c) {
+        covered[c] = true;
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                down[up[j]] = down[j];
+                up[down[j]] = up[j];
+                columnSize[column[j]]--;
+            }
+        }
+    }
+
+    /**
+     * Reverses cover() for the given column.
+     */
+    private void uncover(int c) {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                columnSize[column[j]]++;
+                down[up[j]] = j;
+                up[down[j]] = j;
+            }
+        }
+        right[left[c]] = c;
+        left[right[c]] = c;
+        covered[c] = false;
+    }
+
+    /**
+     * Returns the first node of the given matrix row.
+     */
+    private int rowNode(int matrixRow) {
+        return 1 + numColumns + 4 * matrixRow;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: DancingLinksTests.java
+
+  Purpose: Implements tests for the DancingLinks exact-cover engine, including counting, solving,
+           reusing one instance across boards and stopping within a budget.
+*/
+
+public class DancingLinksTests {
+
+    public static void main(String[] args) {
+        // case 1: counting every solution of board2.txt, which has two
+        {
+            // setup
+            DancingLinks dlx = new DancingLinks(9);
+            Board board = new Board("board2.txt");
+
+            // verify
+            long count = dlx.countSolutions(board);
+            System.out.println(count + " == 2");
+
+            // test
+            assert count == 2 : "Error in DancingLinks::countSolutions(Grid board)";
+        }
+
+        // case 2: counting every solution of an empty 4x4 board
+        {
+            // setup
+            DancingLinks dlx = new DancingLinks(4);
+            BoardExtension board = new BoardExtension(4);
+
+            // verify
+            long count = dlx.countSolutions(board);
+            System.out.println(count + " == 288");
+
+            // test
+            assert count == 288 : "Error in DancingLinks::countSolutions(Grid board)";
+        }
+
+        // case 3: stopping at the limit
+        {
+            // setup
+            DancingLinks dlx = new DancingLinks(9);
+            Board board = new Board("board1.txt");
+
+            // verify
+            long count = dlx.countSolutions(board, 2);
+            System.out.println(count + " == 2");
+
+            // test
+            assert count == 2 : "Error in DancingLinks::countSolutions(Grid board, long limit)";
+        }
+
+        // case 4: solving writes a valid solution and keeps the givens
+        {
+            // setup
+            DancingLinks dlx = new DancingLinks(9);
+            Board board = new Board("board1.txt");
+            int given = board.value(0, 3);
+            boolean solved = dlx.solve(board);
+
+            // verify
+            System.out.println(solved + " == true, " + board.validSolution() + " == true, " + board.value(0, 3)
+                    + " == " + given);
+
+            // test
+            assert solved && board.validSolution() && board.value(0, 3) == given
+                    : "Error in DancingLinks::solve(Grid board)";
+        }
+
+        // case 5: a board with two equal values in a row has no solution
+        {
+            // setup
+            DancingLinks dlx = new DancingLinks(9);
+            Board board = new Board();
+            board.set(0, 0, 5);
+            board.set(0, 8, 5);
+
+            // verify
+            long count = dlx.countSolutions(board, 1);
+            boolean solved = dlx.solve(board);
+            System.out.println(count + " == 0, " + solved + " == false");
+
+            // test
+            assert count == 0 && !solved : "Error in DancingLinks::countSolutions(Grid board, long limit)";
+        }
+
+        // case 6: reusing one instance gives the same answers
+        {
+            // setup
+            DancingLinks dlx = new DancingLinks(9);
+            Board closed = new Board("board2.txt");
+            Board open = new Board("board1.txt");
+            long first = dlx.countSolutions(closed);
+            dlx.countSolutions(open, 1000);
+            dlx.solve(new Board("board1.txt"));
+            long second = dlx.countSolutions(closed);
+
+            // verify
+            System.out.println(first + " == " + second);
+
+            // test
+            assert first == 2 && second == 2 : "Error in DancingLinks reuse";
+        }
+
+        // case 7: a node budget stops counting early and says so, and the
+        // instance still counts correctly afterwards
+        {
+            // setup
+            DancingLinks dlx = new DancingLinks(9);
+            Board empty = new Board();
+            dlx.countSolutions(empty, Long.MAX_VALUE, SearchBudget.NO_LIMIT, 100);
+            SolveOutcome outcome = dlx.getOutcome();
+            long nodes = dlx.getNodeCount();
+            long after = dlx.countSolutions(new Board("board2.txt"));
+
+            // verify
+            System.out.println(outcome + " == BUDGET_EXHAUSTED, " + nodes + " == 100, " + after + " == 2");
+
+            // test
+            assert outcome == SolveOutcome.BUDGET_EXHAUSTED && nodes == 100 && after == 2
+                    : "Error in DancingLinks::countSolutions(Grid board, long limit, long timeoutMillis, long maxNodes)";
+        }
+
+        // case 8: an interrupted thread stops solving at once and keeps its
+        // interrupt status; the board is not changed
+        {
+            // setup
+            DancingLinks dlx = new DancingLinks(9);
+            Board board = new Board("board1.txt");
+            Thread.currentThread().interrupt();
+            SolveOutcome outcome = dlx.solve(board, SearchBudget.NO_LIMIT, SearchBudget.NO_LIMIT);
+            boolean interrupted = Thread.interrupted();
+
+            // verify
+            System.out.println(outcome + " == INTERRUPTED, " + interrupted + " == true, " + board.value(0, 0)
+                    + " == " + new Board("board1.txt").value(0, 0));
+
+            // test
+            assert outcome == SolveOutcome.INTERRUPTED && interrupted
+                    && board.value(0, 0) == new Board("board1.txt").value(0, 0)
+                    : "Error in DancingLinks::solve(Grid board, long timeoutMillis, long maxNodes)";
+        }
+
+        System.out.println("Done testing DancingLinks!");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: DeductionRule.java
+
+  Purpose: Base class for the logical techniques a Propagator runs once singles run out. Each rule can
+  be switched off on its own and keeps track of how much it removed and how long it took.
+*/
+
+public abstract class DeductionRule {
+    private String name;
+    private boolean enabled = true;
+    private long calls;
+    private long eliminations;
+    private long nanos;
+
+    /**
+     * Creates a rule with the given display name.
+     * 
+     * @param name the name shown in rule reports
+     */
+    protected DeductionRule(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Runs the rule once over the whole grid, timing it and counting the
+     * candidates it removes.
+     * 
+     * @param propagator the propagator holding the candidates
+     * @return the number of candidates removed
+     */
+    public int apply(Propagator propagator) {
+        long start = System.nanoTime();
+        int removed = eliminate(propagator);
+        nanos += System.nanoTime() - start;
+        calls++;
+        eliminations += removed;
+        return removed;
+    }
+
+    /**
+     * Removes every candidate the rule can rule out in the current state.
+     * 
+     * @param propagator the propagator holding the candidates
+     * @return the number of candidates removed
+     */
+    protected abstract int eliminate(Propagator propagator);
+
+    /**
+     * Returns a new instance of the rule with the same settings and zeroed
+     * counters. Rules keep scratch space between calls, so a propagator on
+     * another thread needs its own copies.
+     * 
+     * @return an enabled copy of the rule
+     */
+    public abstract DeductionRule copy();
+
+    /**
+     * Returns the name of the rule.
+     * 
+     * @return the name shown in rule reports
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Checks if the propagator should run this rule.
+     * 
+     * @return true if the rule is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches the rule on or off.
+     * 
+     * @param enabled whether the propagator should run this rule
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns how many times the rule has run.
+     * 
+     * @return the number of calls since the last resetCounters()
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Returns how many candidates the rule has removed.
+     * 
+     * @return the number of eliminations since the last resetCounters()
+     */
+    public long getEliminations() {
+        return eliminations;
+    }
+
+    /**
+     * Returns the time spent running the rule.
+     * 
+     * @return the nanoseconds spent since the last resetCounters()
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Sets the call, elimination and time counters back to zero.
+     */
+    public void resetCounters() {
+        calls = 0;
+        eliminations = 0;
+        nanos = 0;
+    }
+
+    /**
+     * Returns the rule's name and counters.
+     * 
+     * @return a one-line summary of the rule
+     */
+    public String toString() {
+        return name + (enabled ? "" : " (off)") + ": " + calls + " calls, " + eliminations + " removed, "
+                + (nanos / 1000) + " us";
+    }
+}
@@ -0,0 +1,101 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: Fish.java
+
+  Purpose: Implements the basic fish patterns, X-Wing (n = 2) and Swordfish (n = 3): when a value's
+  candidates in n rows all fall in the same n columns, the value can be removed from every other cell
+  of those columns, and the same with rows and columns swapped.
+*/
+
+public class Fish extends DeductionRule {
+    private int n;
+    private int[] candidates = new int[0];
+    private int[] lines = new int[0];
+    private int[] covers = new int[0];
+
+    /**
+     * Creates the rule for fish of the given size.
+     * 
+     * @param n the number of lines, 2 for X-Wing and 3 for Swordfish
+     */
+    public Fish(int n) {
+        super(n == 2 ? "X-Wing" : n == 3 ? "Swordfish" : n + "-fish");
+        this.n = n;
+    }
+
+    public DeductionRule copy() {
+        return new Fish(n);
+    }
+
+    protected int eliminate(Propagator p) {
+        int size = p.getSize();
+        int removed = 0;
+        if (candidates.length != size * size) {
+            candidates = new int[size * size];
+            lines = new int[size];
+            covers = new int[size];
+        }
+        p.copyCandidates(candidates);
+        for (int value = 1; value <= size; value++) {
+            int bit = 1 << value;
+            // base 0 takes rows as the base lines, base 1 columns
+            for (int base = 0; base < 2; base++) {
+                int count = 0;
+                for (int line = 0; line < size; line++) {
+                    int[] cells = p.unit(base * size + line);
+                    int cover = 0;
+                    for (int i = 0; i < size; i++) {
+                        if ((candidates[cells[i]] & bit) != 0) {
+                            cover |= 1 << i;
+                        }
+                    }
+                    int bits = Integer.bitCount(cover);
+                    if (bits >= 2 && bits <= n) {
+                        lines[count] = line;
+                        covers[count] = cover;
+                        count++;
+                    }
+                }
+                removed += search(p, base, bit, lines, covers, count, 0, 0, 0, 0);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Tries every choice of n base lines, and for any whose candidates fit in
+     * exactly n cover lines removes the value from the rest of those lines.
+     */
+    private int search(Propagator p, int base, int bit, int[] lines, int[] covers, int count, int start, int depth,
+            int cover, int chosenLines) {
+        if (Integer.bitCount(cover) > n) {
+            return 0;
+        }
+        int size = p.getSize();
+        if (depth == n) {
+            int removed = 0;
+            for (int c = 0; c < size; c++) {
+                if ((cover & (1 << c)) == 0) {
+                    continue;
+                }
+                // the cover line crosses base line i at its i-th cell
+                int[] cells = p.unit((1 - base) * size + c);
+                for (int i = 0; i < size; i++) {
+                    if ((chosenLines & (1 << i)) == 0) {
+                        removed += p.eliminate(cells[i], bit);
+                    }
+                }
+            }
+            return removed;
+        }
+        int removed = 0;
+        for (int i = start; i < count; i++) {
+            removed += search(p, base, bit, lines, covers, count, i + 1, depth + 1, cover | covers[i],
+                    chosenLines | (1 << lines[i]));
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: Grid.java
+
+  Purpose: Describes a sudoku board of any size, so solvers, readers and displays can work on either the
+  specialized 9x9 Board or the general BoardExtension.
+*/
+
+import java.awt.Graphics;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+public interface Grid {
+
+    /**
+     * Creates an empty board of the given size: a Board for 9x9, whose layout
+     * is fixed at compile time, and a BoardExtension for any other perfect
+     * square.
+     *
+     * @param size the side length of the board
+     * @return an empty board
+     */
+    public static Grid create(int size) {
+        return size == Board.SIZE ? new Board() : new BoardExtension(size);
+    }
+
+    /**
+     * Returns the number of rows (and columns) of the grid.
+     *
+     * @return the side length of the grid
+     */
+    public int getSize();
+
+    /**
+     * Returns the number of rows of the grid.
+     *
+     * @return the number of rows
+     */
+    public default int getRows() {
+        return getSize();
+    }
+
+    /**
+     * Returns the number of columns of the grid.
+     *
+     * @return the number of columns
+     */
+    public default int getCols() {
+        return getSize();
+    }
+
+    /**
+     * Returns a Cell viewing the given location. The view reads and writes
+     * through to this grid; a new one is made on every call, so the solvers
+     * stick to value/set instead.
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return a Cell view of the location
+     */
+    public default Cell get(int row, int col) {
+        return new Cell(this, row, col);
+    }
+
+    /**
+     * Returns the value of the cell at the given location, 0 if it is empty.
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return the value of the cell
+     */
+    public int value(int row, int col);
+
+    /**
+     * Sets the value of the cell at the given location.
+     *
+     * @param row   the row index
+     * @param col   the column index
+     * @param value the new value, 0 to clear the cell
+     */
+    public void set(int row, int col, int value);
+
+    /**
+     * Returns the values no other cell in the row, column or box of the given
+     * cell holds, as a mask with bit v set for each legal value v.
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return the mask of legal values for the cell
+     */
+    public int candidates(int row, int col);
+
+    /**
+     * Returns how many empty cells share a row, column or box with the given
+     * cell, counting a cell once per unit it shares.
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return the number of empty peers of the cell
+     */
+    public int degree(int row, int col);
+
+    /**
+     * Checks whether no other cell in the row, column or box of the given cell
+     * holds the value.
+     *
+     * @param row   the row index
+     * @param col   the column index
+     * @param value the value to check
+     * @return true if the value can be placed, otherwise false
+     */
+    public boolean validValue(int row, int col, int value);
+
+    /**
+     * Checks that every cell is filled and no value appears twice in any row,
+     * column or box, so only complete boards pass.
+     *
+     * @return true if the board is complete and breaks no rule, otherwise false
+     */
+    public default boolean validSolution() {
+        for (int i = 0; i < getSize(); i++) {
+            for (int j = 0; j < getSize(); j++) {
+                if (value(i, j) == 0 || !validValue(i, j, value(i, j))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the cell at the given location is locked.
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return true if the cell is locked, otherwise false
+     */
+    public boolean isLocked(int row, int col);
+
+    /**
+     * Sets the lock status of the cell at the given location.
+     *
+     * @param row    the row index
+     * @param col    the column index
+     * @param locked the lock status to set
+     */
+    public void set(int row, int col, boolean locked);
+
+    /**
+     * Counts the locked cells.
+     *
+     * @return the number of locked cells
+     */
+    public int numLocked();
+
+    /**
+     * Replaces the whole grid with the given cell values, in row-major order
+     * with 0 for blanks, locking exactly the non-zero cells.
+     *
+     * @param cells size * size values between 0 and size
+     */
+    public void load(byte[] cells);
+
+    /**
+     * Returns an independent copy of the grid with the same values, locked
+     * cells and finished flag.
+     *
+     * @return the copy
+     */
+    public Grid copy();
+
+    /**
+     * Returns whether a solver has marked the grid as finished, which the
+     * display reports.
+     *
+     * @return true if the grid is marked finished
+     */
+    public boolean isFinished();
+
+    /**
+     * Marks the grid as finished or not.
+     *
+     * @param finished whether a solver is done with the grid
+     */
+    public void setFinished(boolean finished);
+
+    /**
+     * Draws the grid with cells {@code scale} pixels wide.
+     *
+     * @param g     the Graphics context to draw on
+     * @param scale the width of a cell in pixels
+     */
+    public void draw(Graphics g, int scale);
+
+    /**
+     * Reads the grid from a text file with one row per line and values
+     * separated by spaces, 0 for blanks. Values read are set and the non-zero
+     * ones locked.
+     *
+     * @param filename the path to the file
+     * @return true if the file was read successfully, false otherwise
+     */
+    public default boolean read(String filename) {
+        File file = new File(filename);
+        if (!file.exists()) {
+            System.err.println("File does not exist: " + filename);
+            return false;
+        }
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            int row = 0;
+            while ((line = br.readLine()) != null && row < getSize()) {
+                String[] values = line.trim().split("\\s+");
+                for (int col = 0; col < getSize() && col < values.length; col++) {
+                    int value = Integer.parseInt(values[col]);
+                    set(row, col, value);
+                    if (value != 0) {
+                        set(row, col, true);
+                    }
+                }
+                row++;
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error reading board configuration: " + e.getMessage());
+            return false;
+        }
+    }
+}
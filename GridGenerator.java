@@ -0,0 +1,137 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: GridGenerator.java
+
+  Purpose: Builds random complete grids and solvable puzzles of any perfect-square size by completing
+  a shuffled first row with a randomized search, without rejection sampling.
+*/
+
+import java.util.Random;
+
+public class GridGenerator {
+
+    // one board and engine per size and thread, reused for every grid; an
+    // engine keeps trail arrays for every cell, so building one per grid
+    // would cost more than filling it
+    private static final ThreadLocal<LargeBoardSolver[]> fillers = ThreadLocal
+            .withInitial(() -> new LargeBoardSolver[LargeBoardSolver.MAX_SIZE + 1]);
+
+    /**
+     * Returns a random complete grid of the given size as values in row-major
+     * order. A shuffled first row, which every size can complete, is filled in
+     * by a LargeBoardSolver with a random seed, so ties between guesses are
+     * broken differently for every grid. Each thread keeps one engine per
+     * size for this. The result is then put through random
+     * validity-preserving symmetries as an extra shuffle: digits are
+     * relabelled, rows are shuffled within their bands and the bands among
+     * themselves, the same for columns and stacks, and the grid is transposed
+     * half of the time.
+     *
+     * @param size the side length, a perfect square
+     * @param rand the source of randomness
+     * @return size * size values between 1 and size
+     */
+    public static byte[] solvedGrid(int size, Random rand) {
+        int n = (int) Math.sqrt(size);
+        if (n * n != size) {
+            throw new IllegalArgumentException("Size must be a perfect square.");
+        }
+        if (size > LargeBoardSolver.MAX_SIZE) {
+            throw new IllegalArgumentException("Boards larger than " + LargeBoardSolver.MAX_SIZE
+                    + " are not supported.");
+        }
+        LargeBoardSolver[] solvers = fillers.get();
+        if (solvers[size] == null) {
+            solvers[size] = new LargeBoardSolver(Grid.create(size));
+        }
+        LargeBoardSolver solver = solvers[size];
+        Grid filled = solver.getBoard();
+        int[] firstRow = permutation(size, rand);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                filled.set(row, col, row == 0 ? firstRow[col] + 1 : 0);
+            }
+        }
+        solver.setSeed(rand.nextLong());
+        if (!solver.solve()) {
+            throw new IllegalStateException("Could not complete a shuffled first row of size " + size + ".");
+        }
+
+        int[] rows = bandPermutation(n, rand);
+        int[] cols = bandPermutation(n, rand);
+        int[] labels = permutation(size, rand);
+        boolean transpose = rand.nextBoolean();
+
+        byte[] grid = new byte[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int r = transpose ? cols[col] : rows[row];
+                int c = transpose ? rows[row] : cols[col];
+                grid[row * size + col] = (byte) (labels[filled.value(r, c) - 1] + 1);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Returns a random puzzle with {@code clues} givens taken from a random
+     * complete grid, so it always has at least one solution. The givens are
+     * spread uniformly over the grid.
+     *
+     * @param size  the side length, a perfect square
+     * @param clues the number of givens, between 0 and size * size
+     * @param rand  the source of randomness
+     * @return size * size values in row-major order, 0 for blanks
+     */
+    public static byte[] puzzle(int size, int clues, Random rand) {
+        if (clues < 0 || clues > size * size) {
+            throw new IllegalArgumentException("A " + size + "x" + size + " board cannot have " + clues + " clues.");
+        }
+        byte[] grid = solvedGrid(size, rand);
+        // a partial shuffle picks the cells to clear
+        int[] cells = new int[size * size];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = i;
+        }
+        for (int i = 0; i < cells.length - clues; i++) {
+            int swapIndex = i + rand.nextInt(cells.length - i);
+            int cell = cells[swapIndex];
+            cells[swapIndex] = cells[i];
+            cells[i] = cell;
+            grid[cell] = 0;
+        }
+        return grid;
+    }
+
+    /**
+     * Returns a random permutation of 0..n-1.
+     */
+    static int[] permutation(int n, Random rand) {
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            int swapIndex = rand.nextInt(i + 1);
+            permutation[i] = permutation[swapIndex];
+            permutation[swapIndex] = i;
+        }
+        return permutation;
+    }
+
+    /**
+     * Returns a random order of n * n rows (or columns) that keeps them in
+     * their bands: the bands are permuted, and the rows within each band.
+     */
+    static int[] bandPermutation(int n, Random rand) {
+        int[] bands = permutation(n, rand);
+        int[] order = new int[n * n];
+        for (int band = 0; band < n; band++) {
+            int[] within = permutation(n, rand);
+            for (int i = 0; i < n; i++) {
+                order[band * n + i] = bands[band] * n + within[i];
+            }
+        }
+        return order;
+    }
+}
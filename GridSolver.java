@@ -0,0 +1,599 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: GridSolver.java
+
+  Purpose: The backtracking search shared by Sudoku and SudokuExtension, written once against the Grid
+  interface. Each solver fixes the board type, so a 9x9 solve runs on the specialized Board.
+*/
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public abstract class GridSolver<G extends Grid> {
+    protected G sudokuBoard;
+
+    // side length of the board, fixed for the solver's lifetime
+    private final int size;
+
+    private SolveListener listener;
+    private CellOrder cellOrder = CellOrder.MRV;
+    private long nodeCount;
+    private Propagator propagator;
+
+    // guessed cells and, with propagation on, the trail mark taken after each
+    // guess; kept between solves so the search loop does not allocate
+    private IntStack solutions;
+    private IntStack marks;
+
+    // set on solvers that others may cancel, such as the ones
+    // SudokuExtension.solveParallel() runs on board copies; solve() stops
+    // with INTERRUPTED once it is true
+    private AtomicBoolean cancelled;
+
+    // the engine solve() uses for boards larger than MAX_MASK_SIZE, created
+    // on first use
+    private LargeBoardSolver largeSolver;
+
+    // counters of the last solve, or null while statistics are off; every
+    // update is behind a null check
+    private SolveStats stats;
+
+    // answers to puzzles already solved, possibly shared with other solvers;
+    // null for none
+    private SolutionCache cache;
+
+    /**
+     * Creates a solver working on the given board in place.
+     *
+     * @param board the board to solve
+     */
+    protected GridSolver(G board) {
+        this.sudokuBoard = board;
+        this.size = board.getSize();
+    }
+
+    /**
+     * Returns the board this solver works on.
+     *
+     * @return the board
+     */
+    public G getBoard() {
+        return sudokuBoard;
+    }
+
+    /**
+     * Makes solve() give up with SolveOutcome.INTERRUPTED once
+     * {@code cancelled} is set. It is checked every
+     * SearchBudget.CHECK_INTERVAL guesses.
+     *
+     * @param cancelled the flag to watch, or null for none
+     */
+    protected void setCancelled(AtomicBoolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Registers the listener told about the progress of solve(), replacing
+     * any earlier one including an attached display. With none registered the
+     * search pays nothing but a null check per step.
+     *
+     * @param listener The listener, or null for none.
+     */
+    public void setSolveListener(SolveListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the listener told about the progress of solve().
+     *
+     * @return The listener, or null if there is none.
+     */
+    public SolveListener getSolveListener() {
+        return listener;
+    }
+
+    /**
+     * Sets how the solver chooses the next empty cell. Defaults to
+     * {@link CellOrder#MRV}.
+     *
+     * @param cellOrder The cell ordering to use.
+     */
+    public void setCellOrder(CellOrder cellOrder) {
+        this.cellOrder = cellOrder;
+    }
+
+    /**
+     * Returns how the solver chooses the next empty cell.
+     *
+     * @return The cell ordering in use.
+     */
+    public CellOrder getCellOrder() {
+        return cellOrder;
+    }
+
+    /**
+     * Turns the naked/hidden singles propagation step on or off. It is off by
+     * default and needs a board no larger than BoardExtension.MAX_MASK_SIZE.
+     *
+     * @param enabled Whether solve() should propagate before and after guesses.
+     */
+    public void setPropagation(boolean enabled) {
+        this.propagator = enabled ? new Propagator(sudokuBoard) : null;
+    }
+
+    /**
+     * Returns the propagation step, to register deduction rules on (see
+     * Propagator.addStandardRules) and whose counters report how many cells the
+     * last solve() placed without guessing.
+     *
+     * @return The propagator, or null if propagation is off.
+     */
+    public Propagator getPropagator() {
+        return propagator;
+    }
+
+    /**
+     * Turns collecting statistics on or off. It is off by default; when off
+     * the search pays a null check per counter.
+     *
+     * @param enabled Whether solve() should fill in a SolveStats.
+     */
+    public void setStatistics(boolean enabled) {
+        this.stats = enabled ? new SolveStats() : null;
+    }
+
+    /**
+     * Returns the statistics of the last solve. The same object is reset and
+     * refilled by every solve.
+     *
+     * @return The statistics, or null if they are off.
+     */
+    public SolveStats getStatistics() {
+        return stats;
+    }
+
+    /**
+     * Sets the cache solve() looks the puzzle up in before searching, and
+     * stores its answer in afterwards. The cache may be shared by solvers on
+     * different threads. Only boards whose filled cells are all locked are
+     * cached.
+     *
+     * @param cache The cache, or null for none.
+     */
+    public void setSolutionCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache solve() consults.
+     *
+     * @return The cache, or null if there is none.
+     */
+    public SolutionCache getSolutionCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the number of guesses made by the last call to solve(), counting
+     * both first tries and retries after backtracking.
+     *
+     * @return The number of search nodes visited.
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Sets the count getNodeCount() reports, for solves done outside solve().
+     */
+    protected void setNodeCount(long nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * Finds the next valid value for a cell, starting from the current cell value +
+     * 1. Reads the board's candidate mask instead of testing each value.
+     *
+     * @param cell The cell for which to find the next valid value.
+     * @return The next valid value or 0 if no valid values are found.
+     */
+    public int findNextValue(Cell cell) {
+        return findNextValue(cell.getRow(), cell.getCol());
+    }
+
+    /**
+     * Finds the next valid value for the cell at the given location, starting
+     * from its current value + 1. Boards that fit in a candidate mask are
+     * answered with bit operations; larger ones test each value against the
+     * board's constant-time validValue.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The next valid value or 0 if no valid values are found.
+     */
+    public int findNextValue(int row, int col) {
+        if (size <= BoardExtension.MAX_MASK_SIZE) {
+            int free = candidates(row, col) & (-1 << (sudokuBoard.value(row, col) + 1));
+            return free == 0 ? 0 : Integer.numberOfTrailingZeros(free);
+        }
+        for (int value = sudokuBoard.value(row, col) + 1; value <= size; value++) {
+            if (stats != null) {
+                stats.validValueCalls++;
+            }
+            if (sudokuBoard.validValue(row, col, value)) {
+                return value;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the next empty cell, in the order set by setCellOrder, and gives it
+     * its first valid value.
+     *
+     * @return The filled cell, or null if there is no empty cell or the next
+     *         empty cell has no valid value.
+     */
+    public Cell findNextCell() {
+        int index = nextCell();
+        return index < 0 ? null : sudokuBoard.get(index / size, index % size);
+    }
+
+    /**
+     * Returns the legal values of a cell as a mask, less any values the
+     * propagator's deduction rules have removed.
+     */
+    private int candidates(int row, int col) {
+        if (stats != null) {
+            stats.candidateLookups++;
+        }
+        int mask = sudokuBoard.candidates(row, col);
+        return propagator == null ? mask : mask & ~propagator.eliminated(row * size + col);
+    }
+
+    /**
+     * Finds the next empty cell, in the order set by setCellOrder, and gives it
+     * its first valid value.
+     *
+     * @return The row-major index of the filled cell, or -1 if there is no empty
+     *         cell or the next empty cell has no valid value.
+     */
+    protected int nextCell() {
+        if (cellOrder == CellOrder.MRV) {
+            return nextCellMRV();
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (sudokuBoard.value(i, j) == 0) {
+                    int newVal = findNextValue(i, j);
+                    if (newVal != 0) {
+                        sudokuBoard.set(i, j, newVal);
+                        return i * size + j;
+                    }
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Picks the empty cell with the fewest valid values, preferring the one
+     * with the fewest empty peers on ties, and gives it its first valid value.
+     * A cell with a single value is taken as soon as it is seen.
+     *
+     * @return The row-major index of the filled cell, or -1 if there is no empty
+     *         cell or some empty cell has no valid value.
+     */
+    private int nextCellMRV() {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        int bestDegree = Integer.MAX_VALUE;
+        for (int i = 0; i < size && bestCount > 1; i++) {
+            for (int j = 0; j < size; j++) {
+                if (sudokuBoard.value(i, j) != 0) {
+                    continue;
+                }
+                int count = countValues(i, j);
+                if (count == 0) {
+                    return -1;
+                }
+                if (count > bestCount) {
+                    continue;
+                }
+                int degree = sudokuBoard.degree(i, j);
+                if (count < bestCount || degree < bestDegree) {
+                    best = i * size + j;
+                    bestCount = count;
+                    bestDegree = degree;
+                    if (count == 1) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (best >= 0) {
+            int row = best / size;
+            int col = best % size;
+            sudokuBoard.set(row, col, findNextValue(row, col));
+        }
+        return best;
+    }
+
+    /**
+     * Counts the valid values for the cell at the given location.
+     */
+    private int countValues(int row, int col) {
+        if (size <= BoardExtension.MAX_MASK_SIZE) {
+            return Integer.bitCount(candidates(row, col));
+        }
+        int count = 0;
+        for (int value = 1; value <= size; value++) {
+            if (stats != null) {
+                stats.validValueCalls++;
+            }
+            if (sudokuBoard.validValue(row, col, value)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Attempts to solve the Sudoku puzzle with no time or node limit. See
+     * solve(long, long).
+     *
+     * @return True if the puzzle is solved successfully, false otherwise.
+     */
+    public boolean solve() {
+        return solve(SearchBudget.NO_LIMIT, SearchBudget.NO_LIMIT) == SolveOutcome.SOLVED;
+    }
+
+    /**
+     * Attempts to solve the Sudoku puzzle within the given time and number of
+     * guesses. With propagation enabled, forced cells are filled in before the
+     * search starts and again after every guess, and undone when that guess is
+     * taken back. Boards larger than BoardExtension.MAX_MASK_SIZE are handed
+     * to LargeBoardSolver, which ignores the cell order and propagation
+     * settings.
+     *
+     * The limits are checked before every guess: the node count each time and
+     * the clock and the thread's interrupt status every
+     * SearchBudget.CHECK_INTERVAL guesses. A search stopped early puts the
+     * board back the way it was. The search loop itself does not allocate;
+     * each call allocates only its budget and flight recorder events. With
+     * statistics on, getStatistics() describes the search afterwards.
+     *
+     * With a solution cache set, a puzzle found in it is answered from there
+     * without searching, and a solved or unsatisfiable puzzle is added to it.
+     *
+     * @param timeoutMillis The time the search may take, or SearchBudget.NO_LIMIT.
+     * @param maxNodes      The number of guesses it may make, or SearchBudget.NO_LIMIT.
+     * @return How the search ended.
+     */
+    public SolveOutcome solve(long timeoutMillis, long maxNodes) {
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        long startTime = 0;
+        if (stats != null) {
+            stats.reset();
+            startTime = System.nanoTime();
+        }
+        SearchBudget budget = new SearchBudget(timeoutMillis, maxNodes, cancelled);
+        SolutionCache.Key key = cache == null ? null : SolutionCache.key(sudokuBoard);
+        if (key != null) {
+            SolveOutcome cached = cache.lookup(key, sudokuBoard);
+            if (cached != null) {
+                nodeCount = 0;
+                if (listener != null) {
+                    listener.solveStarted(sudokuBoard);
+                    listener.solveFinished(sudokuBoard, cached == SolveOutcome.SOLVED);
+                }
+                return finish(cached, startTime, event);
+            }
+        }
+        SolveOutcome outcome = size > BoardExtension.MAX_MASK_SIZE ? solveLarge(budget) : search(budget, startTime);
+        if (key != null) {
+            cache.store(key, sudokuBoard, outcome);
+        }
+        return finish(outcome, startTime, event);
+    }
+
+    /**
+     * The search of solve(long, long) for boards that fit in candidate masks.
+     */
+    private SolveOutcome search(SearchBudget budget, long startTime) {
+        if (solutions == null) {
+            solutions = new IntStack(size * size);
+            marks = new IntStack(size * size);
+        }
+        solutions.clear();
+        marks.clear();
+        int unspecifiedCells = size * size - sudokuBoard.numLocked();
+        long steps = 0;
+        nodeCount = 0;
+        if (propagator != null) {
+            propagator.resetCounters();
+            propagator.clearTrail();
+        }
+
+        if (listener != null) {
+            listener.solveStarted(sudokuBoard);
+        }
+
+        if (stats != null) {
+            stats.setupNanos = System.nanoTime() - startTime;
+        }
+        SolveOutcome stopped = null;
+        SolvePhaseEvent phase = new SolvePhaseEvent();
+        phase.begin();
+        boolean consistent = propagate();
+        if (propagator != null) {
+            commitPhase(phase, "propagation", 0);
+            phase = new SolvePhaseEvent();
+            phase.begin();
+        }
+        while (consistent && solutions.size() + propagated() < unspecifiedCells) {
+            if (listener != null) {
+                listener.stepTaken(sudokuBoard, ++steps);
+            }
+            if ((stopped = budget.check(nodeCount)) != null) {
+                consistent = false;
+                break;
+            }
+
+            int next = nextCell();
+            if (next >= 0) {
+                solutions.pushInt(next);
+                if (propagator != null) {
+                    marks.pushInt(propagator.mark());
+                }
+                nodeCount++;
+                if (stats != null && solutions.size() > stats.maxDepth) {
+                    stats.maxDepth = solutions.size();
+                }
+                if (propagate()) {
+                    continue;
+                }
+            }
+
+            consistent = false;
+            while (!consistent && !solutions.isEmpty()) {
+                if (listener != null) {
+                    listener.stepTaken(sudokuBoard, ++steps);
+                }
+                if ((stopped = budget.check(nodeCount)) != null) {
+                    break;
+                }
+                int index = solutions.peekInt();
+                if (propagator != null) {
+                    propagator.undo(marks.peekInt());
+                }
+                int row = index / size;
+                int col = index % size;
+                sudokuBoard.set(row, col, findNextValue(row, col));
+                if (sudokuBoard.value(row, col) != 0) {
+                    nodeCount++;
+                    consistent = propagate();
+                } else {
+                    solutions.popInt();
+                    if (propagator != null) {
+                        marks.popInt();
+                    }
+                    if (stats != null) {
+                        stats.backtracks++;
+                    }
+                }
+            }
+        }
+
+        commitPhase(phase, "search", nodeCount);
+        if (stats != null && consistent) {
+            stats.guessedCells = solutions.size();
+            stats.propagatedCells = propagated();
+        }
+        if (stats != null && propagator != null) {
+            stats.propagationPlacements = propagator.getCellsResolved();
+        }
+        if (!consistent) {
+            if (propagator != null) {
+                propagator.undo(0);
+            }
+            while (!solutions.isEmpty()) {
+                int index = solutions.popInt();
+                sudokuBoard.set(index / size, index % size, 0);
+            }
+            if (listener != null) {
+                listener.solveFinished(sudokuBoard, false);
+            }
+            return stopped != null ? stopped : SolveOutcome.UNSATISFIABLE;
+        }
+        sudokuBoard.setFinished(true);
+        if (listener != null) {
+            listener.solveFinished(sudokuBoard, true);
+        }
+        return SolveOutcome.SOLVED;
+    }
+
+    /**
+     * Records the outcome, node count and total time of a solve in the
+     * statistics, if they are on, and in a SolveEvent, if Flight Recorder
+     * wants it, and returns the outcome.
+     */
+    private SolveOutcome finish(SolveOutcome outcome, long startTime, SolveEvent event) {
+        if (stats != null) {
+            stats.outcome = outcome;
+            stats.nodes = nodeCount;
+            stats.totalNanos = System.nanoTime() - startTime;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "solve";
+            event.boardSize = size;
+            event.clues = sudokuBoard.numLocked();
+            event.outcome = outcome.name();
+            event.nodes = nodeCount;
+            event.solutions = outcome == SolveOutcome.SOLVED ? 1 : 0;
+            event.commit();
+        }
+        return outcome;
+    }
+
+    /**
+     * Ends a phase of solve() and records it if Flight Recorder wants it.
+     */
+    private void commitPhase(SolvePhaseEvent phase, String name, long nodes) {
+        phase.end();
+        if (phase.shouldCommit()) {
+            phase.phase = name;
+            phase.boardSize = size;
+            phase.nodes = nodes;
+            phase.commit();
+        }
+    }
+
+    /**
+     * solve(long, long) for boards too large for candidate masks.
+     */
+    private SolveOutcome solveLarge(SearchBudget budget) {
+        if (largeSolver == null) {
+            largeSolver = new LargeBoardSolver(sudokuBoard);
+        }
+        if (listener != null) {
+            listener.solveStarted(sudokuBoard);
+        }
+        SolveOutcome outcome = largeSolver.solve(budget, stats);
+        nodeCount = largeSolver.getNodeCount();
+        if (listener != null) {
+            listener.solveFinished(sudokuBoard, outcome == SolveOutcome.SOLVED);
+        }
+        return outcome;
+    }
+
+    /**
+     * Runs the propagation step if it is enabled.
+     *
+     * @return False if propagation found a contradiction, true otherwise.
+     */
+    private boolean propagate() {
+        if (propagator == null) {
+            return true;
+        }
+        if (stats == null) {
+            return propagator.propagate();
+        }
+        long startTime = System.nanoTime();
+        boolean consistent = propagator.propagate();
+        stats.propagationNanos += System.nanoTime() - startTime;
+        return consistent;
+    }
+
+    /**
+     * Returns the number of cells currently filled by propagation.
+     */
+    private int propagated() {
+        return propagator == null ? 0 : propagator.placedCells();
+    }
+}
@@ -0,0 +1,267 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: GridTransform.java
+
+  Purpose: One symmetry of the sudoku rules: an optional transposition, a reordering of the rows that
+  keeps bands together, one of the columns that keeps stacks together, and a relabeling of the digits.
+  Any puzzle and its image have the same number of solutions, mapped onto each other.
+*/
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class GridTransform {
+    private final int size;
+    private final boolean transposed;
+    private final int[] rows;
+    private final int[] cols;
+    private final int[] digits;
+
+    /**
+     * Creates the transform that, after transposing the grid if
+     * {@code transposed} is set, puts row {@code rows[i]} at row i and column
+     * {@code cols[j]} at column j, and replaces every digit d by
+     * {@code digits[d]}. The orders must keep the rows of a band, and the
+     * columns of a stack, together.
+     *
+     * @param transposed whether the grid is transposed first
+     * @param rows       the source row of every row
+     * @param cols       the source column of every column
+     * @param digits     the new value of every digit, with digits[0] == 0
+     */
+    public GridTransform(boolean transposed, int[] rows, int[] cols, int[] digits) {
+        this.size = rows.length;
+        this.transposed = transposed;
+        this.rows = rows.clone();
+        this.cols = cols.clone();
+        this.digits = digits.clone();
+        int box = (int) Math.sqrt(size);
+        if (box * box != size || cols.length != size || digits.length != size + 1 || digits[0] != 0
+                || !keepsBoxes(this.rows, box) || !keepsBoxes(this.cols, box) || !isPermutation(this.digits)) {
+            throw new IllegalArgumentException("Not a sudoku symmetry.");
+        }
+    }
+
+    /**
+     * Checks that the order is a permutation taking whole bands (or stacks)
+     * of {@code box} lines to whole bands.
+     */
+    private static boolean keepsBoxes(int[] order, int box) {
+        if (!isPermutation(order)) {
+            return false;
+        }
+        for (int i = 0; i < order.length; i++) {
+            if (order[i] / box != order[i - i % box] / box) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPermutation(int[] order) {
+        boolean[] seen = new boolean[order.length];
+        for (int value : order) {
+            if (value < 0 || value >= order.length || seen[value]) {
+                return false;
+            }
+            seen[value] = true;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a transform chosen uniformly from the symmetries of boards of
+     * the given size.
+     *
+     * @param size the side length of the boards
+     * @param rand the source of randomness
+     * @return the transform
+     */
+    public static GridTransform random(int size, Random rand) {
+        int box = (int) Math.sqrt(size);
+        int[] digits = new int[size + 1];
+        int[] shuffled = shuffle(size, rand);
+        for (int d = 1; d <= size; d++) {
+            digits[d] = shuffled[d - 1] + 1;
+        }
+        return new GridTransform(rand.nextBoolean(), lines(box, rand), lines(box, rand), digits);
+    }
+
+    /**
+     * Returns a random line order that keeps the lines of each box together.
+     */
+    private static int[] lines(int box, Random rand) {
+        int[] order = new int[box * box];
+        int[] bands = shuffle(box, rand);
+        for (int band = 0; band < box; band++) {
+            int[] within = shuffle(box, rand);
+            for (int i = 0; i < box; i++) {
+                order[band * box + i] = bands[band] * box + within[i];
+            }
+        }
+        return order;
+    }
+
+    private static int[] shuffle(int n, Random rand) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            int swap = rand.nextInt(i + 1);
+            order[i] = order[swap];
+            order[swap] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Returns the side length of the boards the transform applies to.
+     *
+     * @return the board size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns whether the grid is transposed before the lines are reordered.
+     *
+     * @return true if the transform transposes
+     */
+    public boolean isTransposed() {
+        return transposed;
+    }
+
+    /**
+     * Returns the source row of every row, counted after transposing.
+     *
+     * @return a copy of the row order
+     */
+    public int[] getRows() {
+        return rows.clone();
+    }
+
+    /**
+     * Returns the source column of every column, counted after transposing.
+     *
+     * @return a copy of the column order
+     */
+    public int[] getCols() {
+        return cols.clone();
+    }
+
+    /**
+     * Returns the new value of every digit, 0 staying 0.
+     *
+     * @return a copy of the relabeling
+     */
+    public int[] getDigits() {
+        return digits.clone();
+    }
+
+    /**
+     * Returns the row-major index of the cell moved to the given location.
+     */
+    private int source(int row, int col) {
+        return transposed ? cols[col] * size + rows[row] : rows[row] * size + cols[col];
+    }
+
+    /**
+     * Returns the image of the cells under the transform.
+     *
+     * @param cells size * size values in row-major order, 0 for blanks
+     * @return the transformed cells
+     */
+    public byte[] apply(byte[] cells) {
+        byte[] image = new byte[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                image[row * size + col] = (byte) digits[cells[source(row, col)]];
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Undoes the transform: returns the cells whose image is the given cells.
+     * Use it to turn a solution of the transformed puzzle into a solution of
+     * the original.
+     *
+     * @param image size * size values in row-major order, 0 for blanks
+     * @return the cells before the transform
+     */
+    public byte[] invert(byte[] image) {
+        int[] inverse = new int[size + 1];
+        for (int d = 0; d <= size; d++) {
+            inverse[digits[d]] = d;
+        }
+        byte[] cells = new byte[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                cells[source(row, col)] = (byte) inverse[image[row * size + col]];
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the image of the board under the transform, as a new board with
+     * the non-zero cells locked.
+     *
+     * @param board the board to transform
+     * @return the transformed board
+     */
+    public Grid apply(Grid board) {
+        Grid image = Grid.create(size);
+        image.load(apply(cells(board)));
+        return image;
+    }
+
+    /**
+     * Fills the empty cells of the board from a solution of its image, so a
+     * canonical puzzle needs solving only once for every puzzle equivalent to
+     * it.
+     *
+     * @param board    the board this transform was found for
+     * @param solution a solution of the transformed board
+     */
+    public void solveFrom(Grid board, Grid solution) {
+        byte[] cells = invert(cells(solution));
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (board.value(row, col) == 0) {
+                    board.set(row, col, cells[row * size + col]);
+                }
+            }
+        }
+        board.setFinished(true);
+    }
+
+    /**
+     * Returns the values of the board in row-major order.
+     *
+     * @param board the board
+     * @return size * size values, 0 for blanks
+     */
+    public static byte[] cells(Grid board) {
+        int size = board.getSize();
+        byte[] cells = new byte[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                cells[row * size + col] = (byte) board.value(row, col);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the transform on one line.
+     *
+     * @return the transposition, line orders and relabeling
+     */
+    public String toString() {
+        return "transposed=" + transposed + " rows=" + Arrays.toString(rows) + " cols="
+                + Arrays.toString(cols) + " digits=" + Arrays.toString(digits);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: HiddenSubset.java
+
+  Purpose: Implements hidden pairs and triples: when n values of a row, column or box can only go in
+  the same n cells, every other candidate can be removed from those cells.
+*/
+
+import java.util.Arrays;
+
+public class HiddenSubset extends DeductionRule {
+    private int n;
+    private int[] candidates = new int[0];
+    private int[] values = new int[0];
+    private int[] positions = new int[0];
+    private int[] cellsOf = new int[0];
+
+    /**
+     * Creates the rule for subsets of the given size.
+     * 
+     * @param n the subset size, 2 for pairs and 3 for triples
+     */
+    public HiddenSubset(int n) {
+        super(n == 2 ? "Hidden pairs" : n == 3 ? "Hidden triples" : "Hidden " + n + "-subsets");
+        this.n = n;
+    }
+
+    public DeductionRule copy() {
+        return new HiddenSubset(n);
+    }
+
+    protected int eliminate(Propagator p) {
+        int size = p.getSize();
+        int removed = 0;
+        if (candidates.length != size * size) {
+            candidates = new int[size * size];
+            values = new int[size];
+            positions = new int[size];
+            cellsOf = new int[size + 1];
+        }
+        p.copyCandidates(candidates);
+        for (int u = 0; u < 3 * size; u++) {
+            int[] unit = p.unit(u);
+            // cellsOf[v] has bit i set when the unit's i-th cell can hold v
+            Arrays.fill(cellsOf, 0);
+            for (int i = 0; i < size; i++) {
+                for (int mask = candidates[unit[i]]; mask != 0; mask &= mask - 1) {
+                    cellsOf[Integer.numberOfTrailingZeros(mask)] |= 1 << i;
+                }
+            }
+            int count = 0;
+            for (int value = 1; value <= size; value++) {
+                int where = cellsOf[value];
+                int bits = Integer.bitCount(where);
+                if (bits >= 2 && bits <= n) {
+                    values[count] = value;
+                    positions[count] = where;
+                    count++;
+                }
+            }
+            removed += search(p, unit, values, positions, count, 0, 0, 0, 0);
+        }
+        return removed;
+    }
+
+    /**
+     * Tries every choice of n of the collected values, clearing the other
+     * candidates of the cells of any choice that fits in exactly n cells.
+     */
+    private int search(Propagator p, int[] unit, int[] values, int[] positions, int count, int start, int depth,
+            int where, int valueMask) {
+        if (Integer.bitCount(where) > n) {
+            return 0;
+        }
+        if (depth == n) {
+            int removed = 0;
+            for (int i = 0; i < unit.length; i++) {
+                if ((where & (1 << i)) != 0) {
+                    removed += p.eliminate(unit[i], ~valueMask);
+                }
+            }
+            return removed;
+        }
+        int removed = 0;
+        for (int i = start; i < count; i++) {
+            removed += search(p, unit, values, positions, count, i + 1, depth + 1, where | positions[i],
+                    valueMask | (1 << values[i]));
+        }
+        return removed;
+    }
+}
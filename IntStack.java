@@ -0,0 +1,122 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: IntStack.java
+
+  Purpose: Implements the Stack interface for int values on top of a plain array, so the solvers can
+  push and pop cell indices without allocating a node (or an Integer) per push.
+*/
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class IntStack implements Stack<Integer> {
+    private int[] items;
+    private int size;
+
+    /**
+     * Creates an empty stack with room for {@code capacity} values before it
+     * has to grow.
+     * 
+     * @param capacity the number of values to preallocate room for
+     */
+    public IntStack(int capacity) {
+        items = new int[capacity];
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every value, keeping the preallocated room for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the number of values the stack can hold without growing.
+     * 
+     * @return the length of the backing array
+     */
+    public int capacity() {
+        return items.length;
+    }
+
+    /**
+     * Adds the given value to the top of the stack, growing the backing array
+     * if it is full.
+     * 
+     * @param item the value to add
+     */
+    public void pushInt(int item) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, Math.max(1, 2 * items.length));
+        }
+        items[size++] = item;
+    }
+
+    /**
+     * Returns and removes the value on the top of the stack.
+     * 
+     * @return the value on the top of the stack
+     */
+    public int popInt() {
+        if (size == 0) {
+            throw new NoSuchElementException("Cannot remove from an empty list.");
+        }
+        return items[--size];
+    }
+
+    /**
+     * Returns the value on the top of the stack without removing it.
+     * 
+     * @return the value on the top of the stack
+     */
+    public int peekInt() {
+        if (size == 0) {
+            throw new NoSuchElementException("No such Element");
+        }
+        return items[size - 1];
+    }
+
+    // Stack<Integer> methods, boxing on the way in and out; the solvers use
+    // the int versions above
+
+    public Integer peek() {
+        return size == 0 ? null : items[size - 1];
+    }
+
+    public Integer pop() {
+        return popInt();
+    }
+
+    public void push(Integer item) {
+        pushInt(item);
+    }
+
+    /**
+     * Returns the values from the top of the stack down, in the same format
+     * as LinkedList.
+     * 
+     * @return a string listing the stack's values
+     */
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = size - 1; i >= 0; i--) {
+            builder.append(items[i]);
+            if (i > 0) {
+                builder.append(", ");
+            }
+        }
+        return builder.append("}").toString();
+    }
+}
@@ -0,0 +1,195 @@
+public class IntStackTests {
+
+    public static void main(String[] args) {
+        // case 1: testing IntStack(int capacity)
+        {
+            // setup
+            IntStack stack = new IntStack(81);
+
+            // verify
+            System.out.println(stack.size() + " == 0");
+            System.out.println(stack.capacity() + " == 81");
+
+            // test
+            assert stack.isEmpty() : "Error in IntStack::IntStack(int capacity)";
+            assert stack.capacity() == 81 : "Error in IntStack::IntStack(int capacity) or IntStack::capacity()";
+        }
+
+        // case 2: testing pushInt(int item), peekInt() and popInt()
+        {
+            // setup
+            IntStack stack = new IntStack(5);
+            for (int i = 0; i < 5; i++) {
+                stack.pushInt(i);
+            }
+
+            // verify
+            System.out.println(stack + " == {4, 3, 2, 1, 0}");
+            System.out.println(stack.peekInt() + " == 4");
+
+            // test
+            assert stack.toString().equals("{4, 3, 2, 1, 0}") : "Error in IntStack::pushInt(int item)";
+            assert stack.peekInt() == 4 : "Error in IntStack::peekInt()";
+            for (int i = 4; i >= 0; i--) {
+                assert stack.popInt() == i : "Error in IntStack::popInt()";
+            }
+            assert stack.isEmpty() : "Error in IntStack::popInt() or IntStack::isEmpty()";
+        }
+
+        // case 3: testing growth past the preallocated capacity
+        {
+            // setup
+            IntStack stack = new IntStack(2);
+            for (int i = 0; i < 100; i++) {
+                stack.pushInt(i);
+            }
+
+            // verify
+            System.out.println(stack.size() + " == 100");
+            System.out.println(stack.peekInt() + " == 99");
+
+            // test
+            assert stack.size() == 100 : "Error in IntStack::pushInt(int item) growing the array";
+            assert stack.capacity() >= 100 : "Error in IntStack::pushInt(int item) growing the array";
+            assert stack.peekInt() == 99 : "Error in IntStack::pushInt(int item) growing the array";
+        }
+
+        // case 4: testing clear() keeps the room
+        {
+            // setup
+            IntStack stack = new IntStack(10);
+            for (int i = 0; i < 10; i++) {
+                stack.pushInt(i);
+            }
+            stack.clear();
+
+            // verify
+            System.out.println(stack.size() + " == 0");
+            System.out.println(stack.capacity() + " == 10");
+
+            // test
+            assert stack.isEmpty() : "Error in IntStack::clear()";
+            assert stack.capacity() == 10 : "Error in IntStack::clear()";
+        }
+
+        // case 5: testing the Stack<Integer> methods
+        {
+            // setup
+            Stack<Integer> stack = new IntStack(4);
+            stack.push(7);
+            stack.push(8);
+
+            // verify
+            System.out.println(stack.peek() + " == 8");
+
+            // test
+            assert stack.peek() == 8 : "Error in IntStack::peek()";
+            assert stack.pop() == 8 : "Error in IntStack::pop()";
+            assert stack.pop() == 7 : "Error in IntStack::pop()";
+            assert stack.peek() == null : "Error in IntStack::peek() on an empty stack";
+        }
+
+        // case 6: testing popInt() and peekInt() on an empty stack
+        {
+            // setup
+            IntStack stack = new IntStack(4);
+            boolean popThrew = false;
+            boolean peekThrew = false;
+            try {
+                stack.popInt();
+            } catch (java.util.NoSuchElementException e) {
+                popThrew = true;
+            }
+            try {
+                stack.peekInt();
+            } catch (java.util.NoSuchElementException e) {
+                peekThrew = true;
+            }
+
+            // verify
+            System.out.println(popThrew + " == true");
+            System.out.println(peekThrew + " == true");
+
+            // test
+            assert popThrew : "Error in IntStack::popInt() on an empty stack";
+            assert peekThrew : "Error in IntStack::peekInt() on an empty stack";
+        }
+
+        // case 7: testing that pushing and popping within the capacity does not
+        // allocate
+        {
+            // setup
+            IntStack stack = new IntStack(81);
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory
+                    .getThreadMXBean();
+            long sum = 0;
+            for (int round = 0; round < 20000; round++) {
+                for (int i = 0; i < 81; i++) {
+                    stack.pushInt(i);
+                }
+                while (!stack.isEmpty()) {
+                    sum += stack.popInt();
+                }
+            }
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int round = 0; round < 20000; round++) {
+                for (int i = 0; i < 81; i++) {
+                    stack.pushInt(i);
+                }
+                while (!stack.isEmpty()) {
+                    sum += stack.popInt();
+                }
+            }
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+            // verify
+            System.out.println(allocated + " bytes for 1620000 pushes (sum " + sum + ")");
+
+            // test
+            assert allocated < 1024 : "Error in IntStack::pushInt(int item) or IntStack::popInt() allocating";
+        }
+
+        // case 8: testing that the solver's search loop does not allocate per
+        // node: repeated solves of a reloaded board1.txt, with and without
+        // propagation, allocate only each solve's budget and events
+        {
+            // setup
+            Board puzzle = new Board("board1.txt");
+            byte[] cells = new byte[Board.SIZE * Board.SIZE];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = (byte) puzzle.value(i / Board.SIZE, i % Board.SIZE);
+            }
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory
+                    .getThreadMXBean();
+            long worst = 0;
+            long nodes = 0;
+            for (boolean propagation : new boolean[] { false, true }) {
+                Board board = new Board();
+                Sudoku solver = new Sudoku(board);
+                if (propagation) {
+                    solver.setPropagation(true);
+                    solver.getPropagator().addStandardRules();
+                }
+                for (int round = 0; round < 3000; round++) {
+                    board.load(cells);
+                    solver.solve();
+                }
+                long before = threads.getCurrentThreadAllocatedBytes();
+                for (int round = 0; round < 3000; round++) {
+                    board.load(cells);
+                    solver.solve();
+                    nodes += solver.getNodeCount();
+                }
+                worst = Math.max(worst, (threads.getCurrentThreadAllocatedBytes() - before) / 3000);
+            }
+
+            // verify
+            System.out.println(worst + " bytes per solve (" + nodes + " nodes)");
+
+            // test
+            assert worst < 512 : "Error in Sudoku::solve() allocating in the search loop";
+        }
+
+        System.out.println("Done testing IntStack!");
+    }
+}
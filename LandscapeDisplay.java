@@ -24,15 +24,14 @@
  import javax.swing.JPanel;
  
  /**
-  * Displays a Board graphically using Swing. In this version, we use a Board
-  * class rather than a Landscape) and we do not make the assumption that
-  * we are displaying a grid.
+  * Displays a Grid graphically using Swing. In this version, we use a Grid
+  * (either board class rather than a Landscape) and size the window from it.
   * 
   * @author bseastwo
   */
- public class LandscapeDisplay {
+ public class LandscapeDisplay implements SolveListener {
      JFrame win;
-     protected Board scape;
+     protected Grid scape;
      private LandscapePanel canvas;
      private int gridScale; // width (and height) of each square in the grid
  
@@ -42,7 +41,7 @@
       * @param scape the Landscape to display
       * @param scale controls the relative size of the display
       */
-     public LandscapeDisplay(Board scape) {
+     public LandscapeDisplay(Grid scape) {
          // setup the window
          this.win = new JFrame("Sudoku");
          this.win.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -50,8 +49,10 @@
          this.scape = scape;
          this.gridScale = 30;
  
-         // create a panel in which to display the Landscape
-         this.canvas = new LandscapePanel(9 * this.gridScale, 11 * this.gridScale);
+         // create a panel in which to display the Landscape, with two rows
+         // below the board for the finished message
+         int size = scape.getSize();
+         this.canvas = new LandscapePanel(size * this.gridScale, (size + 2) * this.gridScale);
  
          // add the panel to the window, layout, and display
          this.win.add(this.canvas, BorderLayout.CENTER);
@@ -122,4 +123,18 @@
      public void repaint() {
          this.win.repaint();
      }
+ 
+     // SolveListener methods: every event the solver passes on is a repaint
+ 
+     public void solveStarted(Grid grid) {
+         repaint();
+     }
+ 
+     public void stepTaken(Grid grid, long steps) {
+         repaint();
+     }
+ 
+     public void solveFinished(Grid grid, boolean solved) {
+         repaint();
+     }
  }
\ No newline at end of file
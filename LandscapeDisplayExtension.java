@@ -24,22 +24,22 @@ import javax.swing.JFrame;
 import javax.swing.JPanel;
 
 /**
- * Displays a BoardExtension graphically using Swing. This class manages a
+ * Displays a Grid of any size graphically using Swing. This class manages a
  * graphical representation of a board.
  */
-public class LandscapeDisplayExtension {
+public class LandscapeDisplayExtension implements SolveListener {
     private JFrame win;
-    private BoardExtension scape;
+    private Grid scape;
     private LandscapePanel canvas;
     private int gridScale;
 
     /**
-     * Initializes a display window for a BoardExtension.
+     * Initializes a display window for a Grid.
      * 
-     * @param scape the BoardExtension to display
+     * @param scape the Grid to display
      * @param scale controls the relative size of the display
      */
-    public LandscapeDisplayExtension(BoardExtension scape, int scale) {
+    public LandscapeDisplayExtension(Grid scape, int scale) {
 
         this.win = new JFrame("Sudoku");
         this.win.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -97,4 +97,18 @@ public class LandscapeDisplayExtension {
     public void repaint() {
         this.canvas.repaint();
     }
+
+    // SolveListener methods: every event the solver passes on is a repaint
+
+    public void solveStarted(Grid grid) {
+        repaint();
+    }
+
+    public void stepTaken(Grid grid, long steps) {
+        repaint();
+    }
+
+    public void solveFinished(Grid grid, boolean solved) {
+        repaint();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,598 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: LargeBoardSolver.java
+
+  Purpose: Solves boards too large for int candidate masks (up to 64x64), keeping
+  candidates in long bitsets and propagating singles and locked candidates after every guess.
+*/
+
+import java.util.Random;
+
+public class LargeBoardSolver {
+
+    /**
+     * Largest board size the engine handles: one long holds a cell's
+     * candidates.
+     */
+    public static final int MAX_SIZE = 64;
+
+    /**
+     * Number of failed guesses before the first restart of the search.
+     */
+    public static final long FIRST_RESTART_FAILURES = 256;
+
+    private Grid board;
+    private int size;
+    private int n;
+    private int cellCount;
+    private long allValues;
+
+    // cell values, 0 for empty; values fit a byte up to size 127
+    private byte[] values;
+
+    // bit v - 1 is set while v is still possible in the cell; a filled cell
+    // keeps just the bit of its value
+    private long[] candidates;
+
+    // places[u * size + v - 1] has bit p set while v is still possible in the
+    // p-th cell of unit u, the filled cell holding v included
+    private long[] places;
+
+    // cells of every row, column and box: rows first, then columns, then boxes
+    private int[][] units;
+    private int[] rowOf;
+    private int[] colOf;
+    private int[] boxOf;
+    private int[] boxPosition;
+
+    // the box positions of the first column of a box
+    private long boxColumn;
+
+    // every change to candidates since solve() started, with the mask it
+    // replaced, so guesses can be undone; filled cells are stored as -cell - 1
+    private int[] trailCells;
+    private long[] trailMasks;
+    private int trailSize;
+
+    // empty cells found down to one candidate, waiting to be filled
+    private int[] singles;
+    private int singlesSize;
+
+    // places entries that changed and have yet to be checked for hidden
+    // singles and locked candidates
+    private int[] changedPlaces;
+    private boolean[] placeQueued;
+    private int changedSize;
+
+    // the guess stack: the cell and value guessed and the trail size before
+    private int[] guessCell;
+    private int[] guessValue;
+    private int[] guessMark;
+
+    // the guess picked by nextGuess()
+    private int branchCell;
+    private int branchValue;
+
+    private long nodeCount;
+
+    // breaks ties between equally constrained guesses; reseeded with seed by
+    // every solve
+    private Random rand = new Random();
+    private long seed;
+
+    // results of search()
+    private static final int SOLVED = 1;
+    private static final int UNSATISFIABLE = 0;
+    private static final int RESTART = -1;
+    private static final int STOPPED = -2;
+
+    // why the last search() returned STOPPED
+    private SolveOutcome stopped;
+
+    // guesses on the stack of the current search()
+    private int depth;
+
+    // statistics of the current solve, or null
+    private SolveStats stats;
+
+    /**
+     * Creates an engine working on the given board.
+     *
+     * @param board the board to solve, at most MAX_SIZE on a side
+     */
+    public LargeBoardSolver(Grid board) {
+        this.board = board;
+        this.size = board.getSize();
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("Boards larger than " + MAX_SIZE + " are not supported.");
+        }
+        this.n = (int) Math.sqrt(size);
+        this.cellCount = size * size;
+        this.seed = size;
+        this.allValues = size == 64 ? -1L : (1L << size) - 1;
+        this.values = new byte[cellCount];
+        this.candidates = new long[cellCount];
+        this.places = new long[3 * size * size];
+        this.rowOf = new int[cellCount];
+        this.colOf = new int[cellCount];
+        this.boxOf = new int[cellCount];
+        this.boxPosition = new int[cellCount];
+        this.units = new int[3 * size][size];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            rowOf[cell] = row;
+            colOf[cell] = col;
+            boxOf[cell] = (row / n) * n + col / n;
+            boxPosition[cell] = (row % n) * n + col % n;
+            units[row][col] = cell;
+            units[size + col][row] = cell;
+            units[2 * size + boxOf[cell]][boxPosition[cell]] = cell;
+        }
+        for (int i = 0; i < n; i++) {
+            boxColumn |= 1L << (i * n);
+        }
+        // a cell loses each value at most once and is filled at most once
+        this.trailCells = new int[cellCount * (size + 1)];
+        this.trailMasks = new long[cellCount * (size + 1)];
+        this.singles = new int[cellCount];
+        this.changedPlaces = new int[places.length];
+        this.placeQueued = new boolean[places.length];
+        this.guessCell = new int[cellCount];
+        this.guessValue = new int[cellCount];
+        this.guessMark = new int[cellCount];
+    }
+
+    /**
+     * Returns the board this engine works on.
+     *
+     * @return the board
+     */
+    public Grid getBoard() {
+        return board;
+    }
+
+    /**
+     * Sets the seed that breaks ties between equally constrained guesses,
+     * which defaults to the board size. Every solve with the same seed makes
+     * the same guesses; different seeds can take very different times on a
+     * hard board, which PortfolioSolver races against each other.
+     *
+     * @param seed the seed for the following solves
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the number of guesses made by the last call to solve().
+     *
+     * @return the number of search nodes visited
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Solves the board: fills in every forced cell, then repeatedly guesses
+     * and propagates what that forces, backtracking on contradictions. A guess
+     * puts a value in the empty cell with the fewest candidates, or, when no
+     * cell is down to two, puts a value with two places left in some unit
+     * into one of them. A failed guess is ruled out and propagated in turn
+     * before the next guess. A bad early guess on a large
+     * board can cost far more than the rest of the search, so the search
+     * restarts after FIRST_RESTART_FAILURES failed guesses, then twice as
+     * many, and so on. On success the solution is written to the board, which
+     * is left unchanged otherwise.
+     *
+     * @return true if the board was solved, false if it has no solution
+     */
+    public boolean solve() {
+        return solve(SearchBudget.unlimited(), null) == SolveOutcome.SOLVED;
+    }
+
+    /**
+     * solve() within a budget, which is checked before every guess.
+     *
+     * @param budget the limits of this search
+     * @param stats  the statistics to add this search's nodes, backtracks,
+     *               depth, restarts, placed cells and setup time to, or null
+     * @return how the search ended
+     */
+    public SolveOutcome solve(SearchBudget budget, SolveStats stats) {
+        long startTime = stats == null ? 0 : System.nanoTime();
+        this.stats = stats;
+        nodeCount = 0;
+        rand.setSeed(seed);
+        boolean loaded = load();
+        if (stats != null) {
+            stats.setupNanos = System.nanoTime() - startTime;
+        }
+        if (!loaded || !propagate()) {
+            return SolveOutcome.UNSATISFIABLE;
+        }
+        int base = trailSize;
+        long limit = FIRST_RESTART_FAILURES;
+        int result = search(limit, budget);
+        while (result == RESTART) {
+            if (stats != null) {
+                stats.restarts++;
+            }
+            undo(base);
+            limit *= 2;
+            result = search(limit, budget);
+        }
+        if (result == SOLVED) {
+            if (stats != null) {
+                int givens = 0;
+                for (int cell = 0; cell < cellCount; cell++) {
+                    if (board.value(rowOf[cell], colOf[cell]) != 0) {
+                        givens++;
+                    }
+                }
+                stats.guessedCells = depth;
+                stats.propagatedCells = cellCount - givens - depth;
+            }
+            store();
+            return SolveOutcome.SOLVED;
+        }
+        return result == UNSATISFIABLE ? SolveOutcome.UNSATISFIABLE : stopped;
+    }
+
+    /**
+     * Searches from the current state until the board is full, every guess has
+     * failed, {@code maxFailures} guesses have failed or the budget runs out.
+     * Returns SOLVED, UNSATISFIABLE, RESTART or STOPPED respectively, with the
+     * reason for stopping in {@code stopped}.
+     */
+    private int search(long maxFailures, SearchBudget budget) {
+        depth = 0;
+        long failures = 0;
+        while (true) {
+            if ((stopped = budget.check(nodeCount)) != null) {
+                return STOPPED;
+            }
+            if (!nextGuess()) {
+                return SOLVED;
+            }
+            guessCell[depth] = branchCell;
+            guessValue[depth] = branchValue;
+            guessMark[depth] = trailSize;
+            depth++;
+            nodeCount++;
+            if (stats != null && depth > stats.maxDepth) {
+                stats.maxDepth = depth;
+            }
+            boolean consistent = fill(branchCell, branchValue) && propagate();
+
+            // take back failed guesses, ruling each out where it was made,
+            // until that leaves a consistent board
+            while (!consistent) {
+                if (depth == 0) {
+                    return UNSATISFIABLE;
+                }
+                if (++failures > maxFailures) {
+                    return RESTART;
+                }
+                depth--;
+                if (stats != null) {
+                    stats.backtracks++;
+                }
+                undo(guessMark[depth]);
+                consistent = eliminate(guessCell[depth], 1L << (guessValue[depth] - 1)) && propagate();
+            }
+        }
+    }
+
+    /**
+     * Copies the board into the engine, returning false if two givens clash.
+     */
+    private boolean load() {
+        undo(0);
+        for (int cell = 0; cell < cellCount; cell++) {
+            values[cell] = 0;
+            candidates[cell] = allValues;
+        }
+        for (int i = 0; i < places.length; i++) {
+            places[i] = allValues;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            int value = board.value(rowOf[cell], colOf[cell]);
+            if (value != 0 && !fill(cell, value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the filled cells back to the board.
+     */
+    private void store() {
+        for (int cell = 0; cell < cellCount; cell++) {
+            board.set(rowOf[cell], colOf[cell], values[cell]);
+        }
+        board.setFinished(true);
+    }
+
+    /**
+     * Fills a cell and removes its value from every peer, returning false on a
+     * contradiction.
+     */
+    private boolean fill(int cell, int value) {
+        long bit = 1L << (value - 1);
+        if (stats != null) {
+            stats.candidateLookups++;
+        }
+        if ((candidates[cell] & bit) == 0) {
+            return false;
+        }
+        trailCells[trailSize] = -cell - 1;
+        trailMasks[trailSize++] = candidates[cell];
+        values[cell] = (byte) value;
+        if (!eliminate(cell, ~bit)) {
+            return false;
+        }
+        int[] row = units[rowOf[cell]];
+        int[] col = units[size + colOf[cell]];
+        int[] box = units[2 * size + boxOf[cell]];
+        for (int i = 0; i < size; i++) {
+            if ((row[i] != cell && !eliminate(row[i], bit)) || (col[i] != cell && !eliminate(col[i], bit))
+                    || (box[i] != cell && !eliminate(box[i], bit))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes values from a cell's candidates and the cell from those values'
+     * places, queueing whatever that may force. Returns false if the cell or
+     * a unit is left with no option.
+     */
+    private boolean eliminate(int cell, long bits) {
+        long mask = candidates[cell];
+        long removed = mask & bits;
+        if (removed == 0) {
+            return true;
+        }
+        trailCells[trailSize] = cell;
+        trailMasks[trailSize++] = mask;
+        mask ^= removed;
+        candidates[cell] = mask;
+        if (mask == 0) {
+            return false;
+        }
+        if ((mask & (mask - 1)) == 0 && values[cell] == 0) {
+            singles[singlesSize++] = cell;
+        }
+        int row = rowOf[cell] * size;
+        int col = (size + colOf[cell]) * size;
+        int box = (2 * size + boxOf[cell]) * size;
+        long rowBit = 1L << colOf[cell];
+        long colBit = 1L << rowOf[cell];
+        long boxBit = 1L << boxPosition[cell];
+        while (removed != 0) {
+            int v = Long.numberOfTrailingZeros(removed);
+            removed &= removed - 1;
+            if (!removePlace(row + v, rowBit) || !removePlace(col + v, colBit) || !removePlace(box + v, boxBit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clears a place of a value in a unit and queues the entry for
+     * propagate(), returning false if no place is left.
+     */
+    private boolean removePlace(int index, long bit) {
+        long mask = places[index] & ~bit;
+        places[index] = mask;
+        if (mask == 0) {
+            return false;
+        }
+        if (Long.bitCount(mask) <= n && !placeQueued[index]) {
+            placeQueued[index] = true;
+            changedPlaces[changedSize++] = index;
+        }
+        return true;
+    }
+
+    /**
+     * Restores the state at the given trail size and drops anything queued.
+     */
+    private void undo(int mark) {
+        singlesSize = 0;
+        while (changedSize > 0) {
+            placeQueued[changedPlaces[--changedSize]] = false;
+        }
+        while (trailSize > mark) {
+            trailSize--;
+            int cell = trailCells[trailSize];
+            if (cell < 0) {
+                values[-cell - 1] = 0;
+                continue;
+            }
+            long restored = trailMasks[trailSize] & ~candidates[cell];
+            candidates[cell] = trailMasks[trailSize];
+            int row = rowOf[cell] * size;
+            int col = (size + colOf[cell]) * size;
+            int box = (2 * size + boxOf[cell]) * size;
+            while (restored != 0) {
+                int v = Long.numberOfTrailingZeros(restored);
+                restored &= restored - 1;
+                places[row + v] |= 1L << colOf[cell];
+                places[col + v] |= 1L << rowOf[cell];
+                places[box + v] |= 1L << boxPosition[cell];
+            }
+        }
+    }
+
+    /**
+     * Picks the next guess into branchCell and branchValue, returning false if
+     * there is no empty cell. Cells are scanned in row-major order, which
+     * keeps the filled part of a sparse board compact, and the value is drawn
+     * at random from the cell's candidates.
+     */
+    private boolean nextGuess() {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (values[cell] != 0) {
+                continue;
+            }
+            if (stats != null) {
+                stats.candidateLookups++;
+            }
+            int count = Long.bitCount(candidates[cell]);
+            if (count < bestCount) {
+                best = cell;
+                bestCount = count;
+                if (count <= 2) {
+                    break;
+                }
+            }
+        }
+        if (best < 0) {
+            return false;
+        }
+        if (bestCount > 2 && pairedValue()) {
+            return true;
+        }
+        long mask = candidates[best];
+        for (int skip = rand.nextInt(bestCount); skip > 0; skip--) {
+            mask &= mask - 1;
+        }
+        branchCell = best;
+        branchValue = Long.numberOfTrailingZeros(mask) + 1;
+        return true;
+    }
+
+    /**
+     * Looks for a value with exactly two places left in some unit, starting
+     * from a random unit, and if there is one makes putting it in the first of
+     * them the guess.
+     */
+    private boolean pairedValue() {
+        int start = rand.nextInt(places.length);
+        for (int i = 0; i < places.length; i++) {
+            int index = start + i < places.length ? start + i : start + i - places.length;
+            long mask = places[index];
+            if (Long.bitCount(mask) == 2) {
+                branchCell = units[index / size][Long.numberOfTrailingZeros(mask)];
+                branchValue = index % size + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fills naked singles (cells with one candidate) and hidden singles (values
+     * with one place in a unit) and applies locked candidates (a value whose
+     * places in a box lie on one line leaves the rest of that line, and one
+     * whose places on a line lie in one box leaves the rest of that box) until
+     * nothing is queued.
+     *
+     * @return false if a cell or a unit ran out of options
+     */
+    private boolean propagate() {
+        if (stats == null) {
+            return propagateQueued();
+        }
+        long startTime = System.nanoTime();
+        boolean consistent = propagateQueued();
+        stats.propagationNanos += System.nanoTime() - startTime;
+        return consistent;
+    }
+
+    /**
+     * The work of propagate(), untimed.
+     */
+    private boolean propagateQueued() {
+        while (true) {
+            if (singlesSize > 0) {
+                int cell = singles[--singlesSize];
+                if (values[cell] == 0 && !place(cell, Long.numberOfTrailingZeros(candidates[cell]) + 1)) {
+                    return false;
+                }
+            } else if (changedSize > 0) {
+                int index = changedPlaces[--changedSize];
+                placeQueued[index] = false;
+                if (!checkPlaces(index)) {
+                    return false;
+                }
+            } else {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Fills a cell propagation found, counting it as a propagation placement.
+     */
+    private boolean place(int cell, int value) {
+        if (stats != null) {
+            stats.propagationPlacements++;
+        }
+        return fill(cell, value);
+    }
+
+    /**
+     * Applies hidden singles and locked candidates to one places entry.
+     */
+    private boolean checkPlaces(int index) {
+        int unit = index / size;
+        int v = index % size;
+        long mask = places[index];
+        int first = Long.numberOfTrailingZeros(mask);
+        if ((mask & (mask - 1)) == 0) {
+            int cell = units[unit][first];
+            return values[cell] != 0 || place(cell, v + 1);
+        }
+
+        long bit = 1L << v;
+        long segment = ((1L << n) - 1) << (first - first % n);
+        if (unit >= 2 * size) {
+            int band = (unit - 2 * size) / n;
+            int stack = (unit - 2 * size) % n;
+            int boxRow = first / n;
+            int boxCol = first % n;
+            if ((mask & ~segment) == 0) {
+                // all on one row of the box
+                int row = band * n + boxRow;
+                for (int col = 0; col < size; col++) {
+                    if (col / n != stack && !eliminate(row * size + col, bit)) {
+                        return false;
+                    }
+                }
+            } else if ((mask & ~(boxColumn << boxCol)) == 0) {
+                // all on one column of the box
+                int col = stack * n + boxCol;
+                for (int row = 0; row < size; row++) {
+                    if (row / n != band && !eliminate(row * size + col, bit)) {
+                        return false;
+                    }
+                }
+            }
+        } else if ((mask & ~segment) == 0) {
+            // all on a line in one box: clear the box's other lines
+            int line = unit < size ? unit : unit - size;
+            int lineStart = line - line % n;
+            int segmentStart = first - first % n;
+            for (int other = lineStart; other < lineStart + n; other++) {
+                for (int j = segmentStart; other != line && j < segmentStart + n; j++) {
+                    int cell = unit < size ? other * size + j : j * size + other;
+                    if (!eliminate(cell, bit)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: LockedCandidates.java
+
+  Purpose: Implements the locked candidates technique. Pointing: if a value's candidates in a box all
+  lie in one row or column, no other cell of that row or column can take it. Claiming: if a value's
+  candidates in a row or column all lie in one box, no other cell of that box can take it.
+*/
+
+import java.util.Arrays;
+
+public class LockedCandidates extends DeductionRule {
+    private int[] candidates = new int[0];
+    // union of candidates where a row (or column) crosses a box:
+    // rowSegments[row * subGridSize + stack], colSegments[col * subGridSize + band]
+    private int[] rowSegments = new int[0];
+    private int[] colSegments = new int[0];
+
+    public LockedCandidates() {
+        super("Locked candidates");
+    }
+
+    public DeductionRule copy() {
+        return new LockedCandidates();
+    }
+
+    protected int eliminate(Propagator p) {
+        int size = p.getSize();
+        int n = p.getSubGridSize();
+        if (candidates.length != size * size) {
+            candidates = new int[size * size];
+            rowSegments = new int[size * n];
+            colSegments = new int[size * n];
+        }
+        p.copyCandidates(candidates);
+        Arrays.fill(rowSegments, 0);
+        Arrays.fill(colSegments, 0);
+        for (int cell = 0; cell < size * size; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            rowSegments[row * n + col / n] |= candidates[cell];
+            colSegments[col * n + row / n] |= candidates[cell];
+        }
+
+        int removed = 0;
+        removed += lines(p, rowSegments, true);
+        removed += lines(p, colSegments, false);
+        return removed;
+    }
+
+    /**
+     * Applies pointing and claiming to every row (or every column) segment.
+     */
+    private int lines(Propagator p, int[] segments, boolean rows) {
+        int size = p.getSize();
+        int n = p.getSubGridSize();
+        int removed = 0;
+        for (int line = 0; line < size; line++) {
+            int band = line / n;
+            for (int block = 0; block < n; block++) {
+                int segment = segments[line * n + block];
+                if (segment == 0) {
+                    continue;
+                }
+
+                // pointing: values the box only has on this line leave the rest of the line
+                int elsewhereInBox = 0;
+                for (int other = band * n; other < band * n + n; other++) {
+                    if (other != line) {
+                        elsewhereInBox |= segments[other * n + block];
+                    }
+                }
+                int pointing = segment & ~elsewhereInBox;
+                if (pointing != 0) {
+                    for (int i = 0; i < size; i++) {
+                        if (i / n != block) {
+                            removed += p.eliminate(rows ? line * size + i : i * size + line, pointing);
+                        }
+                    }
+                }
+
+                // claiming: values the line only has in this box leave the rest of the box
+                int elsewhereOnLine = 0;
+                for (int other = 0; other < n; other++) {
+                    if (other != block) {
+                        elsewhereOnLine |= segments[line * n + other];
+                    }
+                }
+                int claiming = segment & ~elsewhereOnLine;
+                if (claiming != 0) {
+                    for (int other = band * n; other < band * n + n; other++) {
+                        if (other == line) {
+                            continue;
+                        }
+                        for (int i = block * n; i < block * n + n; i++) {
+                            removed += p.eliminate(rows ? other * size + i : i * size + other, claiming);
+                        }
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+}
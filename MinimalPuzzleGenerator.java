@@ -0,0 +1,293 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: MinimalPuzzleGenerator.java
+
+  Purpose: Generates minimal 9x9 puzzles (unique solution, and removing any clue breaks uniqueness)
+  quickly, checking candidate removals in parallel and reusing one solver per worker thread.
+*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MinimalPuzzleGenerator {
+    private static final int CELLS = Board.SIZE * Board.SIZE;
+
+    private int threads;
+    private ExecutorService pool;
+
+    // one exact-cover matrix per thread, reused for every uniqueness check
+    private final ThreadLocal<DancingLinks> solvers = ThreadLocal.withInitial(() -> new DancingLinks(Board.SIZE));
+
+    /**
+     * Creates a generator running its checks on the given number of threads.
+     * Call close() when done to stop them.
+     *
+     * @param threads the number of worker threads
+     */
+    public MinimalPuzzleGenerator(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread.");
+        }
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Returns a random complete grid: a shuffled first row completed by Dancing
+     * Links, then the digits relabelled and rows, columns, bands and stacks
+     * permuted at random.
+     *
+     * @param rand the source of randomness
+     * @return a solved board with no locked cells
+     */
+    public Board solvedGrid(Random rand) {
+        Board board = new Board();
+        int[] digits = GridGenerator.permutation(Board.SIZE, rand);
+        for (int col = 0; col < Board.SIZE; col++) {
+            board.set(0, col, digits[col] + 1);
+        }
+        solvers.get().solve(board);
+
+        int[] rows = GridGenerator.bandPermutation(3, rand);
+        int[] cols = GridGenerator.bandPermutation(3, rand);
+        int[] labels = GridGenerator.permutation(Board.SIZE, rand);
+        Board shuffled = new Board();
+        for (int row = 0; row < Board.SIZE; row++) {
+            for (int col = 0; col < Board.SIZE; col++) {
+                shuffled.set(row, col, labels[board.value(rows[row], cols[col]) - 1] + 1);
+            }
+        }
+        return shuffled;
+    }
+
+    /**
+     * Generates one minimal puzzle. Clues are tried for removal once each, in
+     * random order, and a clue whose removal breaks uniqueness is kept for
+     * good: removing more clues only adds solutions, so it could never be
+     * removed later either. A single pass therefore ends in a minimal puzzle.
+     *
+     * With more than one thread the next clues in line are checked together,
+     * each against its own copy of the current board. A failed check is final
+     * whatever is removed afterwards, so only successful checks behind the
+     * first removal in a batch are redone.
+     *
+     * @param rand the source of randomness
+     * @return a minimal puzzle with its clues locked
+     */
+    public Board generate(Random rand) {
+        Board board = solvedGrid(rand);
+        int[] order = GridGenerator.permutation(CELLS, rand);
+        if (threads == 1) {
+            removeClues(board, order, solvers.get());
+        } else {
+            removeCluesInParallel(board, order);
+        }
+        for (int cell = 0; cell < CELLS; cell++) {
+            board.set(cell / Board.SIZE, cell % Board.SIZE, board.value(cell / Board.SIZE, cell % Board.SIZE) != 0);
+        }
+        return board;
+    }
+
+    /**
+     * Generates {@code count} minimal puzzles, one per task so every core works
+     * on its own puzzle with no coordination. Puzzle i is generated from seed
+     * {@code seed + i}, so the same seed gives the same puzzles on any number
+     * of threads.
+     *
+     * @param count the number of puzzles
+     * @param seed  the seed of the first puzzle
+     * @return the puzzles in seed order
+     */
+    public List<Board> generate(int count, long seed) {
+        List<Future<Board>> futures = new ArrayList<Future<Board>>();
+        for (int i = 0; i < count; i++) {
+            Random rand = new Random(seed + i);
+            futures.add(pool.submit(() -> {
+                Board board = solvedGrid(rand);
+                removeClues(board, GridGenerator.permutation(CELLS, rand), solvers.get());
+                for (int cell = 0; cell < CELLS; cell++) {
+                    board.set(cell / Board.SIZE, cell % Board.SIZE,
+                            board.value(cell / Board.SIZE, cell % Board.SIZE) != 0);
+                }
+                return board;
+            }));
+        }
+        List<Board> puzzles = new ArrayList<Board>();
+        for (Future<Board> future : futures) {
+            puzzles.add(await(future));
+        }
+        return puzzles;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Tries each cell of {@code order} once, removing its clue if the puzzle
+     * stays unique.
+     */
+    private static void removeClues(Board board, int[] order, DancingLinks dlx) {
+        for (int cell : order) {
+            int row = cell / Board.SIZE;
+            int col = cell % Board.SIZE;
+            int value = board.value(row, col);
+            board.set(row, col, 0);
+            if (!staysUnique(board, row, col, dlx)) {
+                board.set(row, col, value);
+            }
+        }
+    }
+
+    /**
+     * Checks that a unique puzzle is still unique after clearing the given
+     * cell. If the other clues leave the cell a single candidate, it is forced
+     * back to its old value and no search is needed.
+     */
+    private static boolean staysUnique(Board board, int row, int col, DancingLinks dlx) {
+        int candidates = board.candidates(row, col);
+        if ((candidates & (candidates - 1)) == 0) {
+            return true;
+        }
+        return dlx.countSolutions(board, 2) == 1;
+    }
+
+    /**
+     * removeClues with up to {@code threads} removals checked at once.
+     */
+    private void removeCluesInParallel(Board board, int[] order) {
+        List<Integer> pending = new ArrayList<Integer>();
+        for (int cell : order) {
+            pending.add(cell);
+        }
+        while (!pending.isEmpty()) {
+            int batch = Math.min(threads, pending.size());
+            List<Future<Boolean>> checks = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < batch; i++) {
+                int cell = pending.get(i);
+                Board copy = new Board(board);
+                checks.add(pool.submit((Callable<Boolean>) () -> {
+                    copy.set(cell / Board.SIZE, cell % Board.SIZE, 0);
+                    return staysUnique(copy, cell / Board.SIZE, cell % Board.SIZE, solvers.get());
+                }));
+            }
+
+            // the first removable clue goes; failed checks are final; clues
+            // that passed after it are checked again against the new board
+            List<Integer> retry = new ArrayList<Integer>();
+            boolean removed = false;
+            for (int i = 0; i < batch; i++) {
+                int cell = pending.get(i);
+                if (await(checks.get(i))) {
+                    if (!removed) {
+                        board.set(cell / Board.SIZE, cell % Board.SIZE, 0);
+                        removed = true;
+                    } else {
+                        retry.add(cell);
+                    }
+                }
+            }
+            retry.addAll(pending.subList(batch, pending.size()));
+            pending = retry;
+        }
+    }
+
+    /**
+     * Waits for a task, rethrowing its failure unchecked.
+     */
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Generation failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Checks that a puzzle has a unique solution and that removing any one of
+     * its clues breaks that.
+     *
+     * @param puzzle the puzzle to check
+     * @return true if the puzzle is minimal
+     */
+    public static boolean isMinimal(Board puzzle) {
+        DancingLinks dlx = new DancingLinks(Board.SIZE);
+        if (dlx.countSolutions(puzzle, 2) != 1) {
+            return false;
+        }
+        Board copy = new Board(puzzle);
+        for (int cell = 0; cell < CELLS; cell++) {
+            int row = cell / Board.SIZE;
+            int col = cell % Board.SIZE;
+            int value = copy.value(row, col);
+            if (value != 0) {
+                copy.set(row, col, 0);
+                boolean unique = dlx.countSolutions(copy, 2) == 1;
+                copy.set(row, col, value);
+                if (unique) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generates puzzles in bulk and one at a time with parallel checks, and
+     * prints minimal puzzles per second per core for each.
+     * Usage: java MinimalPuzzleGenerator [count] [threads].
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        MinimalPuzzleGenerator generator = new MinimalPuzzleGenerator(threads);
+        try {
+            // warm up the solvers on every thread
+            generator.generate(Math.max(100, count / 10), 0);
+
+            long startTime = System.nanoTime();
+            List<Board> puzzles = generator.generate(count, 1);
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            int clues = 0;
+            for (Board puzzle : puzzles) {
+                clues += puzzle.numLocked();
+            }
+            System.out.println(String.format(
+                    "Bulk:   %d puzzles on %d threads in %.2f s, %.0f puzzles/s, %.0f puzzles/s/core, avg %.1f clues",
+                    count, threads, seconds, count / seconds, count / seconds / threads, (double) clues / count));
+
+            int single = Math.max(1, count / 10);
+            Random rand = new Random(2);
+            startTime = System.nanoTime();
+            Board last = null;
+            for (int i = 0; i < single; i++) {
+                last = generator.generate(rand);
+            }
+            seconds = (System.nanoTime() - startTime) / 1e9;
+            System.out.println(String.format(
+                    "Single: %d puzzles on %d threads in %.2f s, %.0f puzzles/s, %.0f puzzles/s/core, %.2f ms each",
+                    single, threads, seconds, single / seconds, single / seconds / threads, seconds * 1e3 / single));
+
+            System.out.println("Last puzzle minimal: " + isMinimal(last) + ", first bulk puzzle minimal: "
+                    + isMinimal(puzzles.get(0)));
+            System.out.println(last);
+        } finally {
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: NakedSubset.java
+
+  Purpose: Implements naked pairs and triples: when n cells of a row, column or box can only hold the
+  same n values between them, those values can be removed from every other cell of that unit.
+*/
+
+public class NakedSubset extends DeductionRule {
+    private int n;
+    private int[] candidates = new int[0];
+    private int[] cells = new int[0];
+    private int[] masks = new int[0];
+
+    /**
+     * Creates the rule for subsets of the given size.
+     * 
+     * @param n the subset size, 2 for pairs and 3 for triples
+     */
+    public NakedSubset(int n) {
+        super(n == 2 ? "Naked pairs" : n == 3 ? "Naked triples" : "Naked " + n + "-subsets");
+        this.n = n;
+    }
+
+    public DeductionRule copy() {
+        return new NakedSubset(n);
+    }
+
+    protected int eliminate(Propagator p) {
+        int removed = 0;
+        if (candidates.length != p.getSize() * p.getSize()) {
+            candidates = new int[p.getSize() * p.getSize()];
+            cells = new int[p.getSize()];
+            masks = new int[p.getSize()];
+        }
+        p.copyCandidates(candidates);
+        for (int u = 0; u < 3 * p.getSize(); u++) {
+            int[] unit = p.unit(u);
+            int count = 0;
+            for (int cell : unit) {
+                int mask = candidates[cell];
+                int bits = Integer.bitCount(mask);
+                if (bits >= 2 && bits <= n) {
+                    cells[count] = cell;
+                    masks[count] = mask;
+                    count++;
+                }
+            }
+            removed += search(p, unit, cells, masks, count, 0, 0, 0, 0);
+        }
+        return removed;
+    }
+
+    /**
+     * Tries every choice of n of the collected cells, eliminating the values of
+     * any choice whose candidates together number exactly n.
+     */
+    private int search(Propagator p, int[] unit, int[] cells, int[] masks, int count, int start, int depth,
+            int union, long chosen) {
+        if (Integer.bitCount(union) > n) {
+            return 0;
+        }
+        if (depth == n) {
+            int removed = 0;
+            for (int cell : unit) {
+                if (!isChosen(cells, count, chosen, cell)) {
+                    removed += p.eliminate(cell, union);
+                }
+            }
+            return removed;
+        }
+        int removed = 0;
+        for (int i = start; i < count; i++) {
+            removed += search(p, unit, cells, masks, count, i + 1, depth + 1, union | masks[i], chosen | (1L << i));
+        }
+        return removed;
+    }
+
+    private static boolean isChosen(int[] cells, int count, long chosen, int cell) {
+        for (int i = 0; i < count; i++) {
+            if ((chosen & (1L << i)) != 0 && cells[i] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
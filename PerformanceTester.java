@@ -14,30 +14,44 @@ public class PerformanceTester {
 
     private static final long TIMEOUT_MS = 25000; // 25 seconds in milliseconds
 
+    // the scaling report looks through this many seeded puzzles with a fifth
+    // of the cells given for one solve() needs at least MIN_NODES guesses for,
+    // skipping any it cannot solve in MAX_NODES
+    private static final int HARD_PUZZLE_TRIES = 32;
+    private static final long HARD_PUZZLE_MIN_NODES = 100_000;
+    private static final long HARD_PUZZLE_MAX_NODES = 5_000_000;
+
     /**
      * Executes performance testing on Sudoku boards of various sizes to measure
-     * solve time and detect timeouts.
+     * solve time and detect timeouts. Each solve is stopped at TIMEOUT_MS, so
+     * one hard board cannot hold up the run. Sizes above
+     * BoardExtension.MAX_MASK_SIZE are solved by LargeBoardSolver. The
+     * statistics of every solve are printed below its time.
      */
     public static void main(String[] args) {
-        int[] boardSizes = new int[] { 4, 9, 16, 25 };
+        int[] boardSizes = new int[] { 4, 9, 16, 25, 36, 49, 64 };
         String[] timesTaken = new String[boardSizes.length];
 
         for (int i = 0; i < boardSizes.length; i++) {
             int size = boardSizes[i];
             SudokuExtension solver = new SudokuExtension(size);
+            solver.setStatistics(true);
             long startTime = System.currentTimeMillis();
-            boolean solved = solver.solve();
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
+            SolveOutcome outcome = solver.solve(TIMEOUT_MS, SearchBudget.NO_LIMIT);
+            long duration = System.currentTimeMillis() - startTime;
 
-            if (duration > TIMEOUT_MS) {
+            if (outcome == SolveOutcome.TIMED_OUT) {
                 timesTaken[i] = "DNE";
                 System.out.println(
                         "Board size " + size + " solution took longer than " + TIMEOUT_MS + "ms. Marked as DNE.");
+            } else if (outcome != SolveOutcome.SOLVED) {
+                timesTaken[i] = outcome.toString();
+                System.out.println("Board size " + size + " ended as " + outcome + " after " + duration + "ms.");
             } else {
                 timesTaken[i] = String.valueOf(duration);
                 System.out.println("Board size " + size + " solved in " + duration + "ms.");
             }
+            System.out.println("    " + solver.getStatistics());
         }
 
         System.out.println("Board Size | Time Taken (ms) or DNE");
@@ -45,5 +59,78 @@ public class PerformanceTester {
         for (int i = 0; i < boardSizes.length; i++) {
             System.out.println("    " + boardSizes[i] + "     |      " + timesTaken[i]);
         }
+
+        reportParallelScaling(boardSizes);
+    }
+
+    /**
+     * Solves a hard puzzle of each size with solve() and then with
+     * solveParallel() on 1, 2, 4, ... threads up to the number of available
+     * cores, and prints each time with its speedup over solve(). Every run of
+     * a size gets the same puzzle, see hardPuzzle. Sizes solveParallel() hands
+     * back to solve() or without a puzzle solve() finishes are skipped, and
+     * nothing is measured on a single core.
+     */
+    private static void reportParallelScaling(int[] boardSizes) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println();
+        if (cores < 2) {
+            System.out.println("Parallel scaling not measured: only one core is available.");
+            return;
+        }
+        System.out.println("Parallel scaling on " + cores + " cores");
+        System.out.println("Board Size | Threads | Time (ms) | Speedup");
+        System.out.println("------------------------------------------");
+        for (int size : boardSizes) {
+            if (size > BoardExtension.MAX_MASK_SIZE) {
+                continue;
+            }
+            byte[] puzzle = hardPuzzle(size);
+            if (puzzle == null) {
+                System.out.println("    " + size + " skipped: no seeded puzzle solved within " + HARD_PUZZLE_MAX_NODES
+                        + " nodes.");
+                continue;
+            }
+            SudokuExtension sequential = new SudokuExtension(size);
+            sequential.getBoard().load(puzzle);
+            long startTime = System.nanoTime();
+            sequential.solve();
+            double baseline = (System.nanoTime() - startTime) / 1e6;
+            System.out.println(String.format("    %-6d | %-7s | %9.1f | %7.2f", size, "solve", baseline, 1.0));
+
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                SudokuExtension parallel = new SudokuExtension(size);
+                parallel.getBoard().load(puzzle);
+                startTime = System.nanoTime();
+                parallel.solveParallel(threads);
+                double duration = (System.nanoTime() - startTime) / 1e6;
+                System.out.println(String.format("    %-6d | %-7d | %9.1f | %7.2f", size, threads, duration,
+                        baseline / duration));
+            }
+        }
+    }
+
+    /**
+     * Returns the first of HARD_PUZZLE_TRIES seeded puzzles of the given size
+     * that solve() needs at least HARD_PUZZLE_MIN_NODES guesses for, or the
+     * hardest one it solved if none does, or null if it solved none within
+     * HARD_PUZZLE_MAX_NODES. Puzzles come from GridGenerator with
+     * Benchmarks.PUZZLE_SEED, so every run reports on the same puzzles.
+     */
+    private static byte[] hardPuzzle(int size) {
+        Random rand = new Random(Benchmarks.PUZZLE_SEED);
+        byte[] hardest = null;
+        long hardestNodes = -1;
+        for (int i = 0; i < HARD_PUZZLE_TRIES && hardestNodes < HARD_PUZZLE_MIN_NODES; i++) {
+            byte[] puzzle = GridGenerator.puzzle(size, size * size / 5, rand);
+            SudokuExtension solver = new SudokuExtension(size);
+            solver.getBoard().load(puzzle);
+            if (solver.solve(SearchBudget.NO_LIMIT, HARD_PUZZLE_MAX_NODES) == SolveOutcome.SOLVED
+                    && solver.getNodeCount() > hardestNodes) {
+                hardest = puzzle;
+                hardestNodes = solver.getNodeCount();
+            }
+        }
+        return hardest;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,352 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: PortfolioSolver.java
+
+  Purpose: Races several solving strategies against each other on their own threads and copies of the
+  board, taking the first answer and cancelling the rest, to cut the tail latency of a mixed corpus.
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class PortfolioSolver {
+
+    /**
+     * One way of solving a board, run by the portfolio on a private copy.
+     */
+    public interface Engine {
+
+        /**
+         * Solves the board in place, giving up at the timeout or when the
+         * thread is interrupted.
+         *
+         * @param board         the board to solve
+         * @param timeoutMillis the time the engine may take, or
+         *                      SearchBudget.NO_LIMIT
+         * @return how the solve ended
+         */
+        SolveOutcome solve(Grid board, long timeoutMillis);
+    }
+
+    private final List<String> names = new ArrayList<String>();
+    private final List<Engine> engines = new ArrayList<Engine>();
+    private ExecutorService pool;
+    private String winner;
+
+    /**
+     * Creates an empty portfolio running its engines on the given number of
+     * threads. With fewer threads than engines the rest wait their turn. Call
+     * close() when done to stop the threads.
+     *
+     * @param threads the number of worker threads
+     */
+    public PortfolioSolver(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread.");
+        }
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Creates a portfolio of the standard engines for boards of the given
+     * size, with one thread per engine. Boards that fit in candidate masks get
+     * row-major and MRV backtracking, MRV with the standard deduction rules,
+     * and Dancing Links. Larger boards get LargeBoardSolver with one
+     * tie-breaking seed per core, at least two.
+     *
+     * @param size the side length of the boards to solve
+     * @return the portfolio
+     */
+    public static PortfolioSolver standard(int size) {
+        if (size > BoardExtension.MAX_MASK_SIZE) {
+            int seeds = Math.max(2, Runtime.getRuntime().availableProcessors());
+            PortfolioSolver portfolio = new PortfolioSolver(seeds);
+            for (int i = 0; i < seeds; i++) {
+                long seed = size + i;
+                portfolio.add("large seed " + seed, (board, timeoutMillis) -> {
+                    LargeBoardSolver solver = new LargeBoardSolver(board);
+                    solver.setSeed(seed);
+                    return solver.solve(new SearchBudget(timeoutMillis, SearchBudget.NO_LIMIT), null);
+                });
+            }
+            return portfolio;
+        }
+
+        PortfolioSolver portfolio = new PortfolioSolver(4);
+        portfolio.add("row-major", backtracking(CellOrder.ROW_MAJOR, false));
+        portfolio.add("mrv", backtracking(CellOrder.MRV, false));
+        portfolio.add("mrv+rules", backtracking(CellOrder.MRV, true));
+        // one exact-cover matrix per worker, reused for every board it solves
+        ThreadLocal<DancingLinks> dancingLinks = ThreadLocal.withInitial(() -> new DancingLinks(size));
+        portfolio.add("dancing-links",
+                (board, timeoutMillis) -> dancingLinks.get().solve(board, timeoutMillis, SearchBudget.NO_LIMIT));
+        return portfolio;
+    }
+
+    /**
+     * Returns an engine running the backtracking search with the given cell
+     * order, and with propagation and the standard deduction rules if
+     * {@code rules} is set.
+     *
+     * @param order the cell order
+     * @param rules whether to propagate with the standard rules
+     * @return the engine
+     */
+    public static Engine backtracking(CellOrder order, boolean rules) {
+        return (board, timeoutMillis) -> {
+            SudokuExtension solver = new SudokuExtension(board);
+            solver.setCellOrder(order);
+            if (rules) {
+                solver.setPropagation(true);
+                solver.getPropagator().addStandardRules();
+            }
+            return solver.solve(timeoutMillis, SearchBudget.NO_LIMIT);
+        };
+    }
+
+    /**
+     * Adds an engine to the portfolio.
+     *
+     * @param name   the name getWinner() reports when it answers first
+     * @param engine the engine
+     */
+    public void add(String name, Engine engine) {
+        names.add(name);
+        engines.add(engine);
+    }
+
+    /**
+     * Returns the names of the engines, in the order they were added.
+     *
+     * @return the engine names
+     */
+    public List<String> getNames() {
+        return new ArrayList<String>(names);
+    }
+
+    /**
+     * Returns the engine with the given name.
+     *
+     * @param name the engine name
+     * @return the engine
+     */
+    public Engine getEngine(String name) {
+        int index = names.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("No engine named " + name + ".");
+        }
+        return engines.get(index);
+    }
+
+    /**
+     * The answer of one engine on its copy of the board.
+     */
+    private static class Answer {
+        final String name;
+        final SolveOutcome outcome;
+        final Grid board;
+
+        Answer(String name, SolveOutcome outcome, Grid board) {
+            this.name = name;
+            this.outcome = outcome;
+            this.board = board;
+        }
+    }
+
+    /**
+     * Thrown by an engine's task when it stops without an answer, so the
+     * portfolio waits for the others.
+     */
+    private static class Stopped extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final SolveOutcome outcome;
+
+        Stopped(SolveOutcome outcome) {
+            super(outcome.name(), null, false, false);
+            this.outcome = outcome;
+        }
+    }
+
+    /**
+     * Solves the board by starting every engine on its own copy and taking
+     * the first to finish, solved or unsatisfiable; the others are cancelled
+     * by interrupting them. A solution is copied onto the board, which is left
+     * unchanged otherwise.
+     *
+     * @param board         the board to solve
+     * @param timeoutMillis the time each engine may take, or
+     *                      SearchBudget.NO_LIMIT
+     * @return SOLVED or UNSATISFIABLE as answered by the first engine to
+     *         finish, or why every engine stopped without an answer
+     */
+    public SolveOutcome solve(Grid board, long timeoutMillis) {
+        List<Callable<Answer>> tasks = new ArrayList<Callable<Answer>>();
+        for (int i = 0; i < engines.size(); i++) {
+            String name = names.get(i);
+            Engine engine = engines.get(i);
+            Grid copy = board.copy();
+            tasks.add(() -> {
+                SolveOutcome outcome = engine.solve(copy, timeoutMillis);
+                if (!outcome.isFinished()) {
+                    throw new Stopped(outcome);
+                }
+                return new Answer(name, outcome, copy);
+            });
+        }
+
+        winner = null;
+        Answer answer;
+        try {
+            answer = pool.invokeAny(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return SolveOutcome.INTERRUPTED;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Stopped) {
+                return ((Stopped) e.getCause()).outcome;
+            }
+            throw new IllegalStateException("Portfolio solve failed.", e.getCause());
+        }
+
+        winner = answer.name;
+        if (answer.outcome == SolveOutcome.SOLVED) {
+            int size = board.getSize();
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    board.set(row, col, answer.board.value(row, col));
+                }
+            }
+            board.setFinished(true);
+        }
+        return answer.outcome;
+    }
+
+    /**
+     * Returns the name of the engine that answered the last solve.
+     *
+     * @return the engine name, or null if no engine answered
+     */
+    public String getWinner() {
+        return winner;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Returns the given percentile of the latencies, which must be sorted.
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Solves every puzzle of the corpus with the engine and prints the latency
+     * percentiles, and how many solves were stopped without an answer.
+     */
+    private static void report(String label, Engine engine, List<byte[]> corpus, int[] sizes, long timeoutMillis) {
+        long[] latencies = new long[corpus.size()];
+        int stopped = 0;
+        for (int i = 0; i < corpus.size(); i++) {
+            Grid board = Grid.create(sizes[i]);
+            board.load(corpus.get(i));
+            long startTime = System.nanoTime();
+            SolveOutcome outcome = engine.solve(board, timeoutMillis);
+            latencies[i] = System.nanoTime() - startTime;
+            if (!outcome.isFinished()) {
+                stopped++;
+            }
+        }
+        Arrays.sort(latencies);
+        System.out.println(String.format("%-16s | %9.1f | %9.1f | %9.1f | %9.1f | %7d", label,
+                percentile(latencies, 50) / 1e3, percentile(latencies, 99) / 1e3, percentile(latencies, 99.9) / 1e3,
+                latencies[latencies.length - 1] / 1e3, stopped));
+    }
+
+    /**
+     * Builds a mixed corpus of 9x9 minimal puzzles and random 9x9 and 16x16
+     * puzzles across a range of clue counts, then prints the latency
+     * percentiles of each standard engine alone and of the portfolio racing
+     * them. Usage: java PortfolioSolver [count] [timeoutMillis].
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long timeoutMillis = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+
+        Random rand = new Random(20240403);
+        List<byte[]> corpus = new ArrayList<byte[]>();
+        int[] sizes = new int[count];
+        MinimalPuzzleGenerator generator = new MinimalPuzzleGenerator(1);
+        try {
+            for (int i = 0; i < count; i++) {
+                int kind = i % 4;
+                if (kind == 0) {
+                    Board puzzle = generator.generate(rand);
+                    byte[] cells = new byte[Board.SIZE * Board.SIZE];
+                    for (int cell = 0; cell < cells.length; cell++) {
+                        cells[cell] = (byte) puzzle.value(cell / Board.SIZE, cell % Board.SIZE);
+                    }
+                    corpus.add(cells);
+                    sizes[i] = Board.SIZE;
+                } else if (kind == 1) {
+                    corpus.add(GridGenerator.puzzle(9, 17 + rand.nextInt(20), rand));
+                    sizes[i] = 9;
+                } else {
+                    corpus.add(GridGenerator.puzzle(16, 60 + rand.nextInt(100), rand));
+                    sizes[i] = 16;
+                }
+            }
+        } finally {
+            generator.close();
+        }
+
+        PortfolioSolver small = standard(9);
+        PortfolioSolver large = standard(16);
+        List<String> labels = new ArrayList<String>();
+        List<Engine> contenders = new ArrayList<Engine>();
+        for (String name : small.getNames()) {
+            labels.add(name);
+            contenders.add((board, timeout) -> (board.getSize() == 9 ? small : large).getEngine(name).solve(board,
+                    timeout));
+        }
+        labels.add("portfolio");
+        contenders.add((board, timeout) -> (board.getSize() == 9 ? small : large).solve(board, timeout));
+        try {
+            // warm up every engine on part of the corpus first
+            List<byte[]> warmup = corpus.subList(0, Math.min(200, count));
+            for (Engine engine : contenders) {
+                for (int i = 0; i < warmup.size(); i++) {
+                    Grid board = Grid.create(sizes[i]);
+                    board.load(warmup.get(i));
+                    engine.solve(board, timeoutMillis);
+                }
+            }
+
+            System.out.println("Mixed corpus of " + count + " puzzles, " + timeoutMillis + " ms timeout, on "
+                    + Runtime.getRuntime().availableProcessors() + " cores");
+            System.out.println("Engine           |  p50 (us) |  p99 (us) | p99.9 (us) | max (us) | stopped");
+            System.out.println("------------------------------------------------------------------------------");
+            for (int k = 0; k < contenders.size(); k++) {
+                report(labels.get(k), contenders.get(k), corpus, sizes, timeoutMillis);
+            }
+        } finally {
+            small.close();
+            large.close();
+        }
+    }
+}
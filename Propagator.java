@@ -0,0 +1,421 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: Propagator.java
+
+  Purpose: Fills in the cells of a board that simple logic forces (naked and hidden singles), and runs
+  any registered deduction rules to remove candidates, so the backtracking solvers only have to guess
+  where logic runs out.
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Propagator {
+    private Grid grid;
+    private int size;
+    private int subGridSize;
+
+    // cells of every row, column and box as row-major indices: rows first,
+    // then columns, then boxes
+    private int[][] units;
+
+    // candidates removed from each cell by deduction rules, on top of what the
+    // board's masks already rule out
+    private int[] eliminated;
+
+    // every change made by propagate(), in order, so it can be undone: a
+    // placement stores -1 as the old mask, an elimination the mask it replaced
+    private int[] trailCell;
+    private int[] trailOld;
+    private int trailSize;
+    private int placedCells;
+
+    private List<DeductionRule> rules = new ArrayList<DeductionRule>();
+
+    private long nakedSingles;
+    private long hiddenSingles;
+
+    /**
+     * Creates a propagator working on the given grid. The grid must support
+     * candidate masks, i.e. be no larger than
+     * {@link BoardExtension#MAX_MASK_SIZE}.
+     * 
+     * @param grid the grid to fill in
+     */
+    public Propagator(Grid grid) {
+        this.grid = grid;
+        this.size = grid.getSize();
+        if (size > BoardExtension.MAX_MASK_SIZE) {
+            throw new IllegalArgumentException("Propagation needs candidate masks, size " + size + " is too large.");
+        }
+        this.subGridSize = (int) Math.sqrt(size);
+        this.eliminated = new int[size * size];
+        // each cell is placed at most once and loses at most size candidates
+        this.trailCell = new int[size * size * (size + 1)];
+        this.trailOld = new int[size * size * (size + 1)];
+        this.units = new int[3 * size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                units[i][j] = i * size + j;
+                units[size + i][j] = j * size + i;
+                int row = (i / subGridSize) * subGridSize + j / subGridSize;
+                int col = (i % subGridSize) * subGridSize + j % subGridSize;
+                units[2 * size + i][j] = row * size + col;
+            }
+        }
+    }
+
+    /**
+     * Adds a deduction rule to run, after the previously added ones, whenever
+     * the singles run out.
+     * 
+     * @param rule the rule to add
+     */
+    public void addRule(DeductionRule rule) {
+        rules.add(rule);
+    }
+
+    /**
+     * Adds the standard rules, cheapest first: locked candidates, naked and
+     * hidden pairs, naked and hidden triples, X-Wing and Swordfish.
+     */
+    public void addStandardRules() {
+        addRule(new LockedCandidates());
+        addRule(new NakedSubset(2));
+        addRule(new HiddenSubset(2));
+        addRule(new NakedSubset(3));
+        addRule(new HiddenSubset(3));
+        addRule(new Fish(2));
+        addRule(new Fish(3));
+    }
+
+    /**
+     * Returns the registered deduction rules, so they can be toggled and their
+     * timings read.
+     * 
+     * @return the rules in the order they run
+     */
+    public List<DeductionRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Adds a copy of each of this propagator's rules to another one, in the
+     * same order and switched on or off the same way, so both make the same
+     * deductions.
+     * 
+     * @param other the propagator to add the copies to
+     */
+    public void copyRulesTo(Propagator other) {
+        for (DeductionRule rule : rules) {
+            DeductionRule copy = rule.copy();
+            copy.setEnabled(rule.isEnabled());
+            other.addRule(copy);
+        }
+    }
+
+    /**
+     * Places naked singles (cells with one legal value) and hidden singles
+     * (values with one legal cell in a row, column or box) until neither is
+     * left, then runs the enabled deduction rules in order, going back to the
+     * singles as soon as one of them removes a candidate.
+     * 
+     * @return false if the grid reached a contradiction, i.e. an empty cell with
+     *         no legal value or a value with no legal cell in some unit
+     */
+    public boolean propagate() {
+        while (true) {
+            if (!propagateSingles()) {
+                return false;
+            }
+            boolean eliminatedAny = false;
+            for (int i = 0; i < rules.size(); i++) {
+                DeductionRule rule = rules.get(i);
+                if (rule.isEnabled() && rule.apply(this) > 0) {
+                    eliminatedAny = true;
+                    break;
+                }
+            }
+            if (!eliminatedAny) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Places naked and hidden singles until neither is left.
+     */
+    private boolean propagateSingles() {
+        int all = ((1 << (size + 1)) - 1) & ~1;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int cell = 0; cell < size * size; cell++) {
+                if (grid.value(cell / size, cell % size) != 0) {
+                    continue;
+                }
+                int mask = candidates(cell);
+                if (mask == 0) {
+                    return false;
+                }
+                if ((mask & (mask - 1)) == 0) {
+                    place(cell, Integer.numberOfTrailingZeros(mask));
+                    nakedSingles++;
+                    changed = true;
+                }
+            }
+
+            for (int[] unit : units) {
+                int once = 0;
+                int twice = 0;
+                int placed = 0;
+                for (int cell : unit) {
+                    int value = grid.value(cell / size, cell % size);
+                    if (value != 0) {
+                        placed |= 1 << value;
+                    } else {
+                        int mask = candidates(cell);
+                        twice |= once & mask;
+                        once |= mask;
+                    }
+                }
+                if ((once | placed) != all) {
+                    return false;
+                }
+                int hidden = once & ~twice;
+                while (hidden != 0) {
+                    int value = Integer.numberOfTrailingZeros(hidden);
+                    hidden &= hidden - 1;
+                    int target = -1;
+                    for (int cell : unit) {
+                        if ((candidates(cell) & (1 << value)) != 0) {
+                            target = cell;
+                            break;
+                        }
+                    }
+                    if (target < 0) {
+                        // the only cell for this value took another hidden single
+                        return false;
+                    }
+                    place(target, value);
+                    hiddenSingles++;
+                    changed = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the side length of the grid.
+     * 
+     * @return the grid size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the side length of a box.
+     * 
+     * @return the square root of the grid size
+     */
+    public int getSubGridSize() {
+        return subGridSize;
+    }
+
+    /**
+     * Returns the cells of a unit as row-major indices. Units 0..size-1 are the
+     * rows, size..2*size-1 the columns and 2*size..3*size-1 the boxes, each
+     * listed in row-major order.
+     * 
+     * @param unit the unit number
+     * @return the cells of the unit; must not be modified
+     */
+    public int[] unit(int unit) {
+        return units[unit];
+    }
+
+    /**
+     * Returns the values still possible for a cell: those the board allows
+     * minus those removed by deduction rules. Filled cells have none.
+     * 
+     * @param cell the row-major index of the cell
+     * @return the mask of candidate values, bit v for value v
+     */
+    public int candidates(int cell) {
+        if (grid.value(cell / size, cell % size) != 0) {
+            return 0;
+        }
+        return grid.candidates(cell / size, cell % size) & ~eliminated[cell];
+    }
+
+    /**
+     * Copies candidates(cell) for every cell into the given array, so rules
+     * can scan the whole grid without a call per lookup. The copy goes stale
+     * as soon as anything is eliminated, but only ever by holding too many
+     * candidates, which keeps deductions drawn from it sound.
+     * 
+     * @param into an array of at least size * size entries
+     */
+    public void copyCandidates(int[] into) {
+        for (int cell = 0; cell < size * size; cell++) {
+            into[cell] = candidates(cell);
+        }
+    }
+
+    /**
+     * Returns the values deduction rules have removed from a cell on top of
+     * what the board rules out.
+     * 
+     * @param cell the row-major index of the cell
+     * @return the mask of removed values, bit v for value v
+     */
+    public int eliminated(int cell) {
+        return eliminated[cell];
+    }
+
+    /**
+     * Removes candidate values from a cell, recording the change so undo() can
+     * restore it.
+     * 
+     * @param cell the row-major index of the cell
+     * @param mask the values to remove, bit v for value v
+     * @return the number of candidates actually removed
+     */
+    public int eliminate(int cell, int mask) {
+        int removed = candidates(cell) & mask;
+        if (removed == 0) {
+            return 0;
+        }
+        trailCell[trailSize] = cell;
+        trailOld[trailSize] = eliminated[cell];
+        trailSize++;
+        eliminated[cell] |= removed;
+        return Integer.bitCount(removed);
+    }
+
+    /**
+     * Returns a mark for the current point of the trail, to pass to undo().
+     * 
+     * @return the number of changes made and not yet undone
+     */
+    public int mark() {
+        return trailSize;
+    }
+
+    /**
+     * Clears every cell placed and restores every candidate removed since the
+     * given mark.
+     * 
+     * @param mark a value previously returned by mark()
+     */
+    public void undo(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            int cell = trailCell[trailSize];
+            if (trailOld[trailSize] < 0) {
+                grid.set(cell / size, cell % size, 0);
+                placedCells--;
+            } else {
+                eliminated[cell] = trailOld[trailSize];
+            }
+        }
+    }
+
+    /**
+     * Forgets every recorded change without undoing it, so the cells placed so
+     * far stay on the grid and the trail starts empty again. The candidates
+     * removed by deduction rules are cleared as well, since they only hold for
+     * the grid they were made on. Called at the start of each solve so solving
+     * the same grid repeatedly does not overflow the trail and a reloaded grid
+     * starts without the last puzzle's eliminations.
+     */
+    public void clearTrail() {
+        trailSize = 0;
+        placedCells = 0;
+        Arrays.fill(eliminated, 0);
+    }
+
+    /**
+     * Returns the number of cells placed and not yet undone.
+     * 
+     * @return the number of cells currently filled by propagation
+     */
+    public int placedCells() {
+        return placedCells;
+    }
+
+    /**
+     * Returns the number of cells placed because they had a single legal value.
+     * 
+     * @return the naked-single count since the last resetCounters()
+     */
+    public long getNakedSingles() {
+        return nakedSingles;
+    }
+
+    /**
+     * Returns the number of cells placed because they were the only place for a
+     * value in some row, column or box.
+     * 
+     * @return the hidden-single count since the last resetCounters()
+     */
+    public long getHiddenSingles() {
+        return hiddenSingles;
+    }
+
+    /**
+     * Returns the number of cells placed without guessing, including cells
+     * later undone by backtracking.
+     * 
+     * @return the total count of singles since the last resetCounters()
+     */
+    public long getCellsResolved() {
+        return nakedSingles + hiddenSingles;
+    }
+
+    /**
+     * Sets the single counters and the counters of every rule back to zero.
+     */
+    public void resetCounters() {
+        nakedSingles = 0;
+        hiddenSingles = 0;
+        for (DeductionRule rule : rules) {
+            rule.resetCounters();
+        }
+    }
+
+    /**
+     * Returns a table with one line per rule: whether it is enabled, how often
+     * it ran, how many candidates it removed and the time it took.
+     * 
+     * @return the rule report
+     */
+    public String ruleReport() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Rule               | On  | Calls    | Removed  | Time (ms)\n");
+        for (DeductionRule rule : rules) {
+            builder.append(String.format("%-18s | %-3s | %8d | %8d | %9.3f%n", rule.getName(),
+                    rule.isEnabled() ? "yes" : "no", rule.getCalls(), rule.getEliminations(),
+                    rule.getNanos() / 1e6));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Sets a cell and records it on the trail.
+     */
+    private void place(int cell, int value) {
+        grid.set(cell / size, cell % size, value);
+        trailCell[trailSize] = cell;
+        trailOld[trailSize] = -1;
+        trailSize++;
+        placedCells++;
+    }
+}
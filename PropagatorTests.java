@@ -0,0 +1,78 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: PropagatorTests.java
+
+  Purpose: Implements tests for the Propagator and its deduction rules, including clearing rule
+           eliminations between solves so a reused solver does not carry them over to a new board.
+*/
+
+import java.util.Random;
+
+public class PropagatorTests {
+
+    public static void main(String[] args) {
+        // case 1: clearTrail() forgets the candidates the deduction rules removed
+        {
+            // setup
+            Random rand = new Random(6);
+            Board board = new Board();
+            Propagator propagator = new Propagator(board);
+            propagator.addStandardRules();
+            long eliminations = 0;
+            int stale = 0;
+            for (int i = 0; i < 100; i++) {
+                board.load(GridGenerator.puzzle(9, 20 + rand.nextInt(15), rand));
+                propagator.clearTrail();
+                propagator.propagate();
+                propagator.clearTrail();
+                for (int cell = 0; cell < Board.SIZE * Board.SIZE; cell++) {
+                    if (propagator.eliminated(cell) != 0) {
+                        stale++;
+                    }
+                }
+            }
+            for (DeductionRule rule : propagator.getRules()) {
+                eliminations += rule.getEliminations();
+            }
+
+            // verify
+            System.out.println((eliminations > 0) + " == true, " + stale + " == 0");
+
+            // test
+            assert eliminations > 0 && stale == 0 : "Error in Propagator::clearTrail()";
+        }
+
+        // case 2: one propagating solver with the deduction rules, reused on
+        // reloaded boards, agrees with DancingLinks on every puzzle
+        {
+            // setup
+            Random rand = new Random(6);
+            DancingLinks dlx = new DancingLinks(9);
+            Board board = new Board();
+            Sudoku solver = new Sudoku(board);
+            solver.setPropagation(true);
+            solver.getPropagator().addStandardRules();
+            int wrong = 0;
+            for (int i = 0; i < 100; i++) {
+                byte[] puzzle = GridGenerator.puzzle(9, 20 + rand.nextInt(15), rand);
+                board.load(puzzle);
+                boolean solved = solver.solve() && board.validSolution();
+                board.load(puzzle);
+                if (solved != (dlx.countSolutions(board, 1) > 0)) {
+                    wrong++;
+                }
+            }
+
+            // verify
+            System.out.println(wrong + " == 0");
+
+            // test
+            assert wrong == 0 : "Error in Sudoku::solve() reused with propagation and deduction rules";
+        }
+
+        System.out.println("Done testing Propagator!");
+    }
+}
@@ -0,0 +1,325 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: PuzzleCorpus.java
+
+  Purpose: Reads very large files of 9x9 puzzles, one 81-character line each, by memory-mapping them
+  and parsing the mapped bytes directly into cell arrays, in chunks that worker threads can read
+  independently.
+*/
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PuzzleCorpus implements Closeable {
+
+    /**
+     * Largest number of bytes mapped at once. A single mapping cannot exceed
+     * 2 GB, so bigger files are always split into at least this many chunks.
+     */
+    public static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private static final int CELLS = Board.SIZE * Board.SIZE;
+
+    private FileChannel channel;
+    private long size;
+
+    /**
+     * Opens a corpus file for reading.
+     *
+     * @param filename the path to the file
+     * @throws IOException if the file cannot be opened
+     */
+    public PuzzleCorpus(String filename) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Returns the length of the file.
+     *
+     * @return the number of bytes in the corpus
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Splits the file into at least {@code parts} chunks of about equal size,
+     * each starting and ending on a line boundary and no larger than
+     * MAX_CHUNK_BYTES plus one line. Every puzzle is in exactly one chunk. The
+     * chunks are mapped here and can be read on different threads at once.
+     *
+     * @param parts the number of chunks wanted, usually the number of workers
+     * @return the chunks in file order, leaving out empty ones
+     * @throws IOException if the file cannot be read or mapped
+     */
+    public List<Chunk> split(int parts) throws IOException {
+        int count = (int) Math.max(parts, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        long start = 0;
+        for (int i = 1; i <= count; i++) {
+            long end = i == count ? size : Math.max(start, lineStart(size * i / count));
+            if (end > start) {
+                chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), start));
+            }
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns the offset of the first line starting at or after the given
+     * offset, or the file size if there is none.
+     */
+    private long lineStart(long offset) throws IOException {
+        if (offset == 0) {
+            return 0;
+        }
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        long position = offset - 1;
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Closes the file. Chunks already mapped stay readable.
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A line-aligned piece of the corpus, read one puzzle at a time. A chunk
+     * is not safe to share between threads; give each worker its own.
+     */
+    public static class Chunk {
+        private MappedByteBuffer buffer;
+        private long fileOffset;
+        private int position;
+        private int lineOffset = -1;
+        private int malformed;
+
+        private Chunk(MappedByteBuffer buffer, long fileOffset) {
+            this.buffer = buffer;
+            this.fileOffset = fileOffset;
+        }
+
+        /**
+         * Parses the next puzzle into {@code cells}: 81 values in row-major
+         * order, 1-9 for givens and 0 for blanks written as '0' or '.'. Blank
+         * lines and trailing spaces or carriage returns are skipped; lines of
+         * the wrong length or with other characters are skipped and counted.
+         *
+         * @param cells an array of at least 81 entries to fill
+         * @return false if the chunk has no puzzles left
+         */
+        public boolean next(byte[] cells) {
+            MappedByteBuffer buffer = this.buffer;
+            int limit = buffer.limit();
+            int position = this.position;
+            while (position < limit) {
+                int start = position;
+
+                // common case: exactly 81 cells and a newline
+                if (position + CELLS < limit && buffer.get(position + CELLS) == '\n' && parse(position, cells)) {
+                    this.position = position + CELLS + 1;
+                    lineOffset = start;
+                    return true;
+                }
+
+                int count = 0;
+                boolean valid = true;
+                while (position < limit) {
+                    byte c = buffer.get(position++);
+                    if (c == '\n') {
+                        break;
+                    }
+                    if (c == '\r' || c == ' ' || c == '\t') {
+                        continue;
+                    }
+                    if (count < CELLS) {
+                        if (c == '.' || c == '0') {
+                            cells[count] = 0;
+                        } else if (c >= '1' && c <= '9') {
+                            cells[count] = (byte) (c - '0');
+                        } else {
+                            valid = false;
+                        }
+                    }
+                    count++;
+                }
+                if (count == 0) {
+                    continue;
+                }
+                if (valid && count == CELLS) {
+                    this.position = position;
+                    lineOffset = start;
+                    return true;
+                }
+                malformed++;
+            }
+            this.position = position;
+            return false;
+        }
+
+        /**
+         * Parses the 81 bytes from the given position, returning false if any
+         * of them is not a digit or '.'.
+         */
+        private boolean parse(int position, byte[] cells) {
+            for (int i = 0; i < CELLS; i++) {
+                int c = buffer.get(position + i);
+                if (c == '.') {
+                    c = '0';
+                }
+                int value = c - '0';
+                if (value < 0 || value > 9) {
+                    return false;
+                }
+                cells[i] = (byte) value;
+            }
+            return true;
+        }
+
+        /**
+         * Returns where in the file the puzzle last returned by next() starts,
+         * to identify it in reports.
+         *
+         * @return the byte offset of the puzzle's line, or -1 before the first
+         *         puzzle
+         */
+        public long offset() {
+            return lineOffset < 0 ? -1 : fileOffset + lineOffset;
+        }
+
+        /**
+         * Returns the number of non-blank lines next() skipped as malformed.
+         *
+         * @return the number of malformed lines seen so far
+         */
+        public int getMalformedCount() {
+            return malformed;
+        }
+
+        /**
+         * Returns the number of bytes in the chunk.
+         *
+         * @return the chunk length
+         */
+        public int length() {
+            return buffer.limit();
+        }
+    }
+
+    /**
+     * Times parsing a corpus with BufferedReader and Board.parseLine against
+     * the mapped reader, then solves it with each worker reading its own
+     * chunk. Usage: java PuzzleCorpus <file> [threads].
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java PuzzleCorpus <file> [threads]");
+            return;
+        }
+        String filename = args[0];
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        long startTime = System.nanoTime();
+        long givens = 0;
+        int lines = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
+            String line = br.readLine();
+            while (line != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    try {
+                        givens += Board.parseLine(line).numLocked();
+                        lines++;
+                    } catch (IllegalArgumentException e) {
+                        // counted as malformed by the mapped reader below
+                    }
+                }
+                line = br.readLine();
+            }
+        }
+        double readerMs = (System.nanoTime() - startTime) / 1e6;
+        System.out.println(String.format("BufferedReader: %d puzzles, %d givens in %.1f ms", lines, givens, readerMs));
+
+        try (PuzzleCorpus corpus = new PuzzleCorpus(filename)) {
+            startTime = System.nanoTime();
+            givens = 0;
+            lines = 0;
+            byte[] cells = new byte[CELLS];
+            for (Chunk chunk : corpus.split(1)) {
+                while (chunk.next(cells)) {
+                    for (int i = 0; i < CELLS; i++) {
+                        givens += cells[i] != 0 ? 1 : 0;
+                    }
+                    lines++;
+                }
+            }
+            double mappedMs = (System.nanoTime() - startTime) / 1e6;
+            System.out.println(String.format("Mapped:         %d puzzles, %d givens in %.1f ms (%.1fx)", lines, givens,
+                    mappedMs, readerMs / mappedMs));
+
+            startTime = System.nanoTime();
+            List<Chunk> chunks = corpus.split(threads);
+            AtomicInteger nextChunk = new AtomicInteger();
+            AtomicLong solved = new AtomicLong();
+            AtomicLong unsolved = new AtomicLong();
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                workers[t] = new Thread(() -> {
+                    DancingLinks dlx = new DancingLinks(Board.SIZE);
+                    Board board = new Board();
+                    byte[] puzzle = new byte[CELLS];
+                    for (int c = nextChunk.getAndIncrement(); c < chunks.size(); c = nextChunk.getAndIncrement()) {
+                        Chunk chunk = chunks.get(c);
+                        while (chunk.next(puzzle)) {
+                            board.load(puzzle);
+                            if (dlx.solve(board)) {
+                                solved.incrementAndGet();
+                            } else {
+                                unsolved.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            double solveMs = (System.nanoTime() - startTime) / 1e6;
+            long total = solved.get() + unsolved.get();
+            System.out.println(String.format("Solved %d of %d puzzles on %d threads in %.1f ms (%.0f puzzles/s)",
+                    solved.get(), total, threads, solveMs, total / (solveMs / 1e3)));
+        }
+    }
+}
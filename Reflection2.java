@@ -15,6 +15,15 @@ public class Reflection2 extends Sudoku {
 
     public final Random rand = new Random();
 
+    // cells guessed by numSolutions(), kept between calls
+    private IntStack solutions = new IntStack(Board.SIZE * Board.SIZE);
+
+    // exact-cover matrix for countSolutions(), reused across calls
+    private DancingLinks dancingLinks = new DancingLinks(Board.SIZE);
+
+    // how the last countSolutions() or numSolutions() ended
+    private SolveOutcome countOutcome;
+
     /**
      * Constructor that initializes the Reflection2 with a solved and permuted
      * board.
@@ -25,6 +34,16 @@ public class Reflection2 extends Sudoku {
         sudokuBoard.randomPermute();
     }
 
+    /**
+     * Constructor that works on the given board as it is, without solving or
+     * permuting it.
+     * 
+     * @param board the board to work on
+     */
+    public Reflection2(Board board) {
+        super(board);
+    }
+
     /**
      * Locks all cells on the board.
      */
@@ -37,55 +56,154 @@ public class Reflection2 extends Sudoku {
     }
 
     /**
-     * Attempts to create a minimal Sudoku board by randomly removing values and
-     * ensuring only one solution exists.
+     * Creates a minimal Sudoku board: one with a unique solution where removing
+     * any clue breaks uniqueness. Every cell is tried once, in random order,
+     * and its value removed if the solution stays unique. A clue that has to
+     * stay can never be removed later either, since removing other clues only
+     * adds solutions, so one pass is enough. See MinimalPuzzleGenerator for
+     * generating many puzzles quickly.
      */
     public void makeMinimalBoard() {
         lockAllCells();
-        while (true) {
-
-            int row = rand.nextInt(9);
-            int col = rand.nextInt(9);
-            Cell temp = sudokuBoard.get(row, col);
-            temp.setValue(0);
-            temp.setLocked(false);
-
-            if (numSolutions() != 1) {
-                sudokuBoard.set(row, col, temp.getValue());
-                break;
+        int[] order = new int[Board.SIZE * Board.SIZE];
+        for (int i = 0; i < order.length; i++) {
+            int swapIndex = rand.nextInt(i + 1);
+            order[i] = order[swapIndex];
+            order[swapIndex] = i;
+        }
+        for (int cell : order) {
+            int row = cell / Board.SIZE;
+            int col = cell % Board.SIZE;
+            int value = sudokuBoard.value(row, col);
+            sudokuBoard.set(row, col, 0);
+            sudokuBoard.set(row, col, false);
+
+            if (!hasUniqueSolution()) {
+                sudokuBoard.set(row, col, value);
+                sudokuBoard.set(row, col, true);
             }
         }
     }
 
+    /**
+     * Counts the solutions of the current board, treating every filled cell as
+     * a given, and stops as soon as {@code limit} have been found. Runs on
+     * Dancing Links and leaves the board unchanged.
+     * 
+     * @param limit the number of solutions after which to stop counting
+     * @return the number of solutions, at most {@code limit}
+     */
+    public long countSolutions(long limit) {
+        return countSolutions(limit, SearchBudget.NO_LIMIT, SearchBudget.NO_LIMIT);
+    }
+
+    /**
+     * countSolutions(long) within the given time and number of search nodes.
+     * If the search is stopped early the count is only a lower bound;
+     * getCountOutcome() tells which.
+     * 
+     * @param limit         the number of solutions after which to stop counting
+     * @param timeoutMillis the time the search may take, or SearchBudget.NO_LIMIT
+     * @param maxNodes      the number of nodes it may visit, or SearchBudget.NO_LIMIT
+     * @return the number of solutions found, at most {@code limit}
+     */
+    public long countSolutions(long limit, long timeoutMillis, long maxNodes) {
+        long count = dancingLinks.countSolutions(sudokuBoard, limit, timeoutMillis, maxNodes);
+        countOutcome = dancingLinks.getOutcome();
+        return count;
+    }
+
+    /**
+     * Returns how the last countSolutions() or numSolutions() ended: SOLVED if
+     * it found a solution, UNSATISFIABLE if it searched everything and found
+     * none, or why it was stopped early, in which case its count is only a
+     * lower bound.
+     * 
+     * @return the outcome of the last count, or null before the first
+     */
+    public SolveOutcome getCountOutcome() {
+        return countOutcome;
+    }
+
+    /**
+     * Checks whether the current board has exactly one solution, stopping the
+     * search at the second one.
+     * 
+     * @return true if the board has a unique solution
+     */
+    public boolean hasUniqueSolution() {
+        return countSolutions(2) == 1;
+    }
+
     /**
      * Calculates the number of solutions for the current board state.
      * 
      * @return the number of solutions.
      */
     public int numSolutions() {
+        return numSolutions(SearchBudget.NO_LIMIT, SearchBudget.NO_LIMIT);
+    }
 
-        Stack<Cell> solutions = new LinkedList<Cell>();
+    /**
+     * numSolutions() within the given time and number of guesses. The limits
+     * are checked before every guess, as in solve(long, long). A count stopped
+     * early is only a lower bound, getCountOutcome() tells which, and the
+     * board is put back the way it was.
+     * 
+     * @param timeoutMillis the time the count may take, or SearchBudget.NO_LIMIT
+     * @param maxNodes      the number of guesses it may make, or SearchBudget.NO_LIMIT
+     * @return the number of solutions found
+     */
+    public int numSolutions(long timeoutMillis, long maxNodes) {
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        SearchBudget budget = new SearchBudget(timeoutMillis, maxNodes);
+        solutions.clear();
         int unspecifiedCells = (Board.SIZE * Board.SIZE) - this.sudokuBoard.numLocked();
         int counter = 0;
-        int delay = 0;
+        long nodes = 0;
+        SolveOutcome stopped = null;
 
         while (true) {
             if (solutions.size() == unspecifiedCells) {
                 counter++;
             }
-            Cell next = findNextCell();
-            while (next == null && !solutions.isEmpty()) {
-                Cell tempCell = solutions.pop();
-                tempCell.setValue(findNextValue(tempCell));
-                if (tempCell.getValue() != 0) {
-                    next = tempCell;
+            int next = nextCell();
+            while (next < 0 && !solutions.isEmpty()) {
+                int index = solutions.popInt();
+                int row = index / Board.SIZE;
+                int col = index % Board.SIZE;
+                sudokuBoard.set(row, col, findNextValue(row, col));
+                if (sudokuBoard.value(row, col) != 0) {
+                    next = index;
+                }
+            }
+            if (next >= 0 && (stopped = budget.check(nodes)) != null) {
+                // clear the guessed cells, the next one included
+                sudokuBoard.set(next / Board.SIZE, next % Board.SIZE, 0);
+                while (!solutions.isEmpty()) {
+                    int index = solutions.popInt();
+                    sudokuBoard.set(index / Board.SIZE, index % Board.SIZE, 0);
                 }
+                next = -1;
             }
-            if (next == null) {
-                // System.out.println(counter);
+            if (next < 0) {
+                countOutcome = stopped != null ? stopped
+                        : counter > 0 ? SolveOutcome.SOLVED : SolveOutcome.UNSATISFIABLE;
+                event.end();
+                if (event.shouldCommit()) {
+                    event.operation = "numSolutions";
+                    event.boardSize = Board.SIZE;
+                    event.clues = sudokuBoard.numLocked();
+                    event.outcome = countOutcome.name();
+                    event.nodes = nodes;
+                    event.solutions = counter;
+                    event.commit();
+                }
                 return counter;
             } else {
-                solutions.push(next);
+                solutions.pushInt(next);
+                nodes++;
             }
         }
     }
@@ -95,6 +213,7 @@ public class Reflection2 extends Sudoku {
      */
     public static void main(String[] args) {
         Reflection2 sudoku = new Reflection2();
+        sudoku.attachDisplay();
         sudoku.numSolutions();
 
         System.out.println("Solved Board:");
@@ -0,0 +1,93 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: SearchBudget.java
+
+  Purpose: Bounds one search by a deadline and a number of nodes, and notices thread interruption, at
+  a cost of a compare and a decrement per node.
+*/
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SearchBudget {
+
+    /**
+     * Passed as a timeout or a node count to leave it unlimited.
+     */
+    public static final long NO_LIMIT = Long.MAX_VALUE;
+
+    /**
+     * Number of nodes between looks at the clock, the interrupt status and the
+     * cancellation flag.
+     */
+    public static final int CHECK_INTERVAL = 256;
+
+    private final boolean hasDeadline;
+    private final long deadline;
+    private final long maxNodes;
+    private final AtomicBoolean cancelled;
+
+    // nodes left until the next look at the clock; starts at one so a search
+    // on an already interrupted thread stops at once
+    private int untilCheck = 1;
+
+    /**
+     * Creates a budget for one search, its deadline counted from now. A
+     * budget belongs to one thread and one search.
+     *
+     * @param timeoutMillis the time the search may take, or NO_LIMIT
+     * @param maxNodes      the number of nodes the search may visit, or
+     *                      NO_LIMIT
+     */
+    public SearchBudget(long timeoutMillis, long maxNodes) {
+        this(timeoutMillis, maxNodes, null);
+    }
+
+    /**
+     * Creates a budget that also ends once {@code cancelled} is set, which
+     * reports as INTERRUPTED.
+     */
+    SearchBudget(long timeoutMillis, long maxNodes, AtomicBoolean cancelled) {
+        this.hasDeadline = timeoutMillis != NO_LIMIT;
+        this.deadline = hasDeadline ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        this.maxNodes = maxNodes;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Returns a budget with no limits, which still stops on interruption.
+     *
+     * @return a new unlimited budget
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(NO_LIMIT, NO_LIMIT);
+    }
+
+    /**
+     * Checks whether the search must stop before visiting another node. The
+     * node count is compared every call; the clock, the interrupt status and
+     * the cancellation flag are read every CHECK_INTERVAL calls.
+     *
+     * @param nodes the number of nodes visited so far
+     * @return why the search must stop, or null to go on
+     */
+    public SolveOutcome check(long nodes) {
+        if (nodes >= maxNodes) {
+            return SolveOutcome.BUDGET_EXHAUSTED;
+        }
+        if (--untilCheck > 0) {
+            return null;
+        }
+        untilCheck = CHECK_INTERVAL;
+        if (Thread.currentThread().isInterrupted() || (cancelled != null && cancelled.get())) {
+            return SolveOutcome.INTERRUPTED;
+        }
+        if (hasDeadline && System.nanoTime() - deadline >= 0) {
+            return SolveOutcome.TIMED_OUT;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,357 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: SolutionCache.java
+
+  Purpose: Remembers the answers to puzzles already solved, keyed by their packed given cells, so a
+  repeated puzzle is answered without searching. Bounded in memory and evicting the least recently
+  used puzzle first; safe to share between solvers on different threads.
+*/
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class SolutionCache {
+
+    /**
+     * The given cells of a puzzle packed at the fewest bits that hold a value
+     * of its size, 4 for 9x9, in row-major order. Two puzzles have equal keys
+     * exactly when they have the same size and the same givens.
+     */
+    public static final class Key {
+        private final int size;
+        private final long[] words;
+        private final int hash;
+
+        private Key(int size, long[] words) {
+            this.size = size;
+            this.words = words;
+            this.hash = 31 * size + Arrays.hashCode(words);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && size == key.size && Arrays.equals(words, key.words);
+        }
+    }
+
+    // bytes an entry costs beyond its two packed arrays: the key object and
+    // its array header, the solution's array header and the map's entry,
+    // assuming compressed references
+    private static final long ENTRY_OVERHEAD = 104;
+
+    // stored for puzzles known to have no solution
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    private final long maxBytes;
+
+    // in access order, so the first entry is the least recently used
+    private final LinkedHashMap<Key, long[]> entries = new LinkedHashMap<Key, long[]>(16, 0.75f, true);
+    private long memoryUsed;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates an empty cache holding at most about {@code maxBytes} of keys
+     * and solutions. A 9x9 entry takes about 200 bytes.
+     *
+     * @param maxBytes the memory the cache may use
+     */
+    public SolutionCache(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the number of bits a value of a board of the given size is
+     * packed into.
+     */
+    private static int bitsPerCell(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+
+    /**
+     * Packs the values of the board's cells, or of its locked cells only,
+     * with the others as 0.
+     */
+    private static long[] pack(Grid board, boolean givensOnly) {
+        int size = board.getSize();
+        byte[] cells = new byte[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (!givensOnly || board.isLocked(row, col)) {
+                    cells[row * size + col] = (byte) board.value(row, col);
+                }
+            }
+        }
+        return pack(size, cells);
+    }
+
+    /**
+     * Packs the cell values, row-major, at bitsPerCell(size) bits each.
+     */
+    private static long[] pack(int size, byte[] cells) {
+        int bits = bitsPerCell(size);
+        long[] words = new long[(size * size * bits + 63) / 64];
+        int bit = 0;
+        for (byte cell : cells) {
+            long value = cell;
+            words[bit >>> 6] |= value << bit;
+            if ((bit & 63) + bits > 64) {
+                words[(bit >>> 6) + 1] |= value >>> (64 - (bit & 63));
+            }
+            bit += bits;
+        }
+        return words;
+    }
+
+    /**
+     * Returns the key of a puzzle given as its cell values, every non-zero
+     * value counting as a given. Canonicalizer keys canonical forms this way,
+     * so equivalent puzzles share one entry.
+     *
+     * @param size  the side length of the board
+     * @param cells size * size values in row-major order, 0 for blanks
+     * @return the key
+     */
+    public static Key key(int size, byte[] cells) {
+        return new Key(size, pack(size, cells));
+    }
+
+    /**
+     * Returns the cache key of the board's given cells. A board with values
+     * in cells that are not locked has none, since a solve of it depends on
+     * more than its givens.
+     *
+     * @param board the puzzle
+     * @return the key, or null if the board has unlocked values
+     */
+    public static Key key(Grid board) {
+        int size = board.getSize();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (board.value(row, col) != 0 && !board.isLocked(row, col)) {
+                    return null;
+                }
+            }
+        }
+        return new Key(size, pack(board, true));
+    }
+
+    /**
+     * Looks the puzzle up and, if it was solved before, fills the board's
+     * empty cells with the solution and marks it finished.
+     *
+     * @param key   the key of the board, from key(board)
+     * @param board the board to fill in
+     * @return SOLVED or UNSATISFIABLE if the puzzle is cached, null otherwise
+     */
+    public SolveOutcome lookup(Key key, Grid board) {
+        long[] solution;
+        synchronized (this) {
+            solution = entries.get(key);
+            if (solution == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        if (solution == UNSATISFIABLE) {
+            return SolveOutcome.UNSATISFIABLE;
+        }
+        int size = key.size;
+        int bits = bitsPerCell(size);
+        long mask = (1L << bits) - 1;
+        int bit = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (board.value(row, col) == 0) {
+                    long value = solution[bit >>> 6] >>> bit;
+                    if ((bit & 63) + bits > 64) {
+                        value |= solution[(bit >>> 6) + 1] << (64 - (bit & 63));
+                    }
+                    board.set(row, col, (int) (value & mask));
+                }
+                bit += bits;
+            }
+        }
+        board.setFinished(true);
+        return SolveOutcome.SOLVED;
+    }
+
+    /**
+     * Remembers how a solve of the puzzle ended: the board's values if it was
+     * solved, or that it has no solution. Other outcomes are not stored.
+     * Least recently used puzzles are evicted until the cache fits in its
+     * memory again.
+     *
+     * @param key     the key of the puzzle, taken before it was solved
+     * @param board   the board after the solve
+     * @param outcome how the solve ended
+     */
+    public void store(Key key, Grid board, SolveOutcome outcome) {
+        if (!outcome.isFinished()) {
+            return;
+        }
+        long[] solution = outcome == SolveOutcome.SOLVED ? pack(board, false) : UNSATISFIABLE;
+        long bytes = entryBytes(key, solution);
+        synchronized (this) {
+            long[] old = entries.put(key, solution);
+            memoryUsed += bytes;
+            if (old != null) {
+                memoryUsed -= entryBytes(key, old);
+            }
+            Iterator<Map.Entry<Key, long[]>> eldest = entries.entrySet().iterator();
+            while (memoryUsed > maxBytes && eldest.hasNext()) {
+                Map.Entry<Key, long[]> entry = eldest.next();
+                memoryUsed -= entryBytes(entry.getKey(), entry.getValue());
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated memory an entry takes.
+     */
+    private static long entryBytes(Key key, long[] solution) {
+        return ENTRY_OVERHEAD + 8L * (key.words.length + solution.length);
+    }
+
+    /**
+     * Removes every entry. The counters are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        memoryUsed = 0;
+    }
+
+    /**
+     * Returns the number of puzzles in the cache.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found the puzzle.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find the puzzle.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the share of lookups that found the puzzle.
+     *
+     * @return the hit rate between 0 and 1, or 0 before any lookup
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the number of puzzles evicted to stay within the memory bound.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the estimated memory taken by the keys and solutions held,
+     * including the per-entry object overhead.
+     *
+     * @return the memory used in bytes
+     */
+    public synchronized long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    /**
+     * Returns the memory the cache may use.
+     *
+     * @return the bound in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the counters on one line.
+     *
+     * @return the size, hit rate, evictions and memory of the cache
+     */
+    public synchronized String toString() {
+        return String.format("entries=%d hits=%d misses=%d hitRate=%.3f evictions=%d memory=%d/%d bytes",
+                entries.size(), hits, misses, getHitRate(), evictions, memoryUsed, maxBytes);
+    }
+
+    /**
+     * Serves a stream of requests drawn from a smaller set of distinct 9x9
+     * puzzles, some far more popular than others, once without a cache and
+     * once with one, and prints the time taken and the cache counters. Usage:
+     * java SolutionCache [requests] [distinct] [maxBytes].
+     */
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int distinct = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        long maxBytes = args.length > 2 ? Long.parseLong(args[2]) : 100000;
+
+        Random rand = new Random(20240403);
+        byte[][] puzzles = new byte[distinct][];
+        for (int i = 0; i < distinct; i++) {
+            puzzles[i] = GridGenerator.puzzle(Board.SIZE, 24 + rand.nextInt(10), rand);
+        }
+        int[] stream = new int[requests];
+        for (int i = 0; i < requests; i++) {
+            // squaring a uniform draw favours the first puzzles
+            double u = rand.nextDouble();
+            stream[i] = (int) (u * u * distinct);
+        }
+
+        for (int pass = 0; pass < 2; pass++) {
+            SolutionCache cache = pass == 0 ? null : new SolutionCache(maxBytes);
+            Board board = new Board();
+            Sudoku solver = new Sudoku(board);
+            solver.setSolutionCache(cache);
+            long startTime = System.nanoTime();
+            for (int request : stream) {
+                board.load(puzzles[request]);
+                solver.solve();
+            }
+            long elapsed = System.nanoTime() - startTime;
+            System.out.println(String.format("%-8s %8.1f ms  %s", pass == 0 ? "no cache" : "cache", elapsed / 1e6,
+                    cache == null ? "" : cache.toString()));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: SolveEvent.java
+
+  Purpose: JDK Flight Recorder event for one solve or solution count, so slow puzzles in a recording
+  can be lined up with GC pauses and CPU contention.
+*/
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by GridSolver.solve and Reflection2.numSolutions. Only solves
+ * taking at least a millisecond are recorded by default, so the many fast
+ * 9x9 solves cost no more than a clock read each; set the threshold of
+ * sudoku.Solve to 0 ms in a recording's settings to see every solve.
+ */
+@Name("sudoku.Solve")
+@Label("Sudoku Solve")
+@Category("Sudoku")
+@Description("One solve or solution count of a Sudoku board")
+@Threshold("1 ms")
+@StackTrace(false)
+public class SolveEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    @Description("solve or numSolutions")
+    String operation;
+
+    @Label("Board Size")
+    int boardSize;
+
+    @Label("Clues")
+    @Description("Number of locked cells")
+    int clues;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Nodes")
+    @Description("Guesses made, first tries and retries alike")
+    long nodes;
+
+    @Label("Solutions")
+    @Description("Solutions found")
+    long solutions;
+}
@@ -0,0 +1,38 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: SolveListener.java
+
+  Purpose: Lets displays and other observers follow a solve without the solver knowing about them.
+*/
+
+public interface SolveListener {
+
+    /**
+     * Called once before the search starts.
+     * 
+     * @param grid the board being solved
+     */
+    public void solveStarted(Grid grid);
+
+    /**
+     * Called after every step of the search, i.e. every guess and every
+     * backtrack. Runs on the solving thread, so it should return quickly; wrap
+     * expensive listeners in a ThrottledListener.
+     * 
+     * @param grid  the board being solved, in its current state
+     * @param steps the number of steps taken so far in this solve
+     */
+    public void stepTaken(Grid grid, long steps);
+
+    /**
+     * Called once when the search ends, after a solved board has been marked
+     * finished.
+     * 
+     * @param grid   the board that was solved
+     * @param solved whether a solution was found
+     */
+    public void solveFinished(Grid grid, boolean solved);
+}
@@ -0,0 +1,47 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: SolveOutcome.java
+
+  Purpose: Lists the ways a solve or a solution count under a SearchBudget can end.
+*/
+
+public enum SolveOutcome {
+
+    /**
+     * The search finished and found a solution.
+     */
+    SOLVED,
+
+    /**
+     * The search finished and the board has no solution.
+     */
+    UNSATISFIABLE,
+
+    /**
+     * The search was stopped at its deadline.
+     */
+    TIMED_OUT,
+
+    /**
+     * The search was stopped after visiting its maximum number of nodes.
+     */
+    BUDGET_EXHAUSTED,
+
+    /**
+     * The search was stopped because its thread was interrupted or another
+     * search cancelled it. The interrupt status is left set.
+     */
+    INTERRUPTED;
+
+    /**
+     * Returns whether the search ran to the end, so the answer is known.
+     *
+     * @return true for SOLVED and UNSATISFIABLE
+     */
+    public boolean isFinished() {
+        return this == SOLVED || this == UNSATISFIABLE;
+    }
+}
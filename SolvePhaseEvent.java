@@ -0,0 +1,42 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: SolvePhaseEvent.java
+
+  Purpose: JDK Flight Recorder event for a phase of a solve: the propagation before the search, or the
+  search itself.
+*/
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by GridSolver.solve at most once per phase, so a solve makes
+ * at most two of these. Like SolveEvent, only phases taking at least a
+ * millisecond are recorded by default.
+ */
+@Name("sudoku.SolvePhase")
+@Label("Sudoku Solve Phase")
+@Category("Sudoku")
+@Description("The initial propagation or the search of one Sudoku solve")
+@Threshold("1 ms")
+@StackTrace(false)
+public class SolvePhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    @Description("propagation or search")
+    String phase;
+
+    @Label("Board Size")
+    int boardSize;
+
+    @Label("Nodes")
+    @Description("Guesses made during the phase")
+    long nodes;
+}
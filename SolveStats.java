@@ -0,0 +1,188 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: SolveStats.java
+
+  Purpose: Holds what one solve did (nodes, backtracks, depth, value checks, cells placed by guessing
+  and by propagation, time per phase) so slow boards can be told apart from slow code.
+*/
+
+public class SolveStats {
+
+    // filled in by the solvers as they go; package-private so the counting
+    // is a plain field increment
+    long nodes;
+    long backtracks;
+    int maxDepth;
+    long restarts;
+    long candidateLookups;
+    long validValueCalls;
+    int guessedCells;
+    int propagatedCells;
+    long propagationPlacements;
+    long setupNanos;
+    long propagationNanos;
+    long totalNanos;
+    SolveOutcome outcome;
+
+    /**
+     * Clears every counter, ready for the next solve.
+     */
+    public void reset() {
+        nodes = 0;
+        backtracks = 0;
+        maxDepth = 0;
+        restarts = 0;
+        candidateLookups = 0;
+        validValueCalls = 0;
+        guessedCells = 0;
+        propagatedCells = 0;
+        propagationPlacements = 0;
+        setupNanos = 0;
+        propagationNanos = 0;
+        totalNanos = 0;
+        outcome = null;
+    }
+
+    /**
+     * Adds another solve's counters to these, keeping the larger maximum
+     * depth, so a run of solves can be summed up.
+     *
+     * @param other the statistics to add
+     */
+    public void add(SolveStats other) {
+        nodes += other.nodes;
+        backtracks += other.backtracks;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        restarts += other.restarts;
+        candidateLookups += other.candidateLookups;
+        validValueCalls += other.validValueCalls;
+        guessedCells += other.guessedCells;
+        propagatedCells += other.propagatedCells;
+        propagationPlacements += other.propagationPlacements;
+        setupNanos += other.setupNanos;
+        propagationNanos += other.propagationNanos;
+        totalNanos += other.totalNanos;
+    }
+
+    /**
+     * Returns the number of guesses, first tries and retries alike.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of guesses taken back, i.e. pops of the search stack.
+     */
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * Returns the largest number of guesses on the search stack at once.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the number of times the large-board engine restarted its search.
+     * Always 0 for boards that fit in candidate masks.
+     */
+    public long getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * Returns the number of candidate-mask reads, which stand in for a
+     * validValue call per value on boards that fit in a mask. The large-board
+     * engine counts a read for every empty cell it weighs as a guess and for
+     * every cell it fills.
+     */
+    public long getCandidateLookups() {
+        return candidateLookups;
+    }
+
+    /**
+     * Returns the number of validValue calls the search made. Always 0 for
+     * the large-board engine, which only reads candidate masks.
+     */
+    public long getValidValueCalls() {
+        return validValueCalls;
+    }
+
+    /**
+     * Returns the number of cells of the final board filled by a guess.
+     */
+    public int getGuessedCells() {
+        return guessedCells;
+    }
+
+    /**
+     * Returns the number of cells of the final board filled by propagation.
+     */
+    public int getPropagatedCells() {
+        return propagatedCells;
+    }
+
+    /**
+     * Returns the number of cells propagation filled over the whole search,
+     * including the ones undone by backtracking.
+     */
+    public long getPropagationPlacements() {
+        return propagationPlacements;
+    }
+
+    /**
+     * Returns the time spent before the search started, in nanoseconds.
+     */
+    public long getSetupNanos() {
+        return setupNanos;
+    }
+
+    /**
+     * Returns the time spent propagating, in nanoseconds, including the
+     * propagation of the givens before the first guess.
+     */
+    public long getPropagationNanos() {
+        return propagationNanos;
+    }
+
+    /**
+     * Returns the time spent choosing and taking back guesses, in
+     * nanoseconds: the total less setup and propagation.
+     */
+    public long getSearchNanos() {
+        return totalNanos - setupNanos - propagationNanos;
+    }
+
+    /**
+     * Returns the time the whole solve took, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Returns how the solve ended, or null for a sum of several solves.
+     */
+    public SolveOutcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Returns the statistics on one line.
+     *
+     * @return the counters and timings, times in milliseconds
+     */
+    public String toString() {
+        return String.format("nodes=%d backtracks=%d maxDepth=%d restarts=%d candidateLookups=%d validValueCalls=%d"
+                + " guessed=%d propagated=%d propagationPlacements=%d setup=%.3fms propagation=%.3fms search=%.3fms"
+                + " total=%.3fms", nodes, backtracks, maxDepth, restarts, candidateLookups, validValueCalls,
+                guessedCells, propagatedCells, propagationPlacements, setupNanos / 1e6, propagationNanos / 1e6,
+                getSearchNanos() / 1e6, totalNanos / 1e6);
+    }
+}
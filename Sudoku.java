@@ -6,14 +6,13 @@
   Name: Sudoku.java
 
   Purpose: Implements the core functionality of creating and solving a Sudoku puzzle, with support for graphical display.
+  Runs the GridSolver search on the specialized 9x9 Board.
 */
 
 import java.util.Random;
-import java.util.random.*;
 
-public class Sudoku {
-    protected Board sudokuBoard;
-    private Random rand = new Random();
+public class Sudoku extends GridSolver<Board> {
+    private static final Random rand = new Random();
     private LandscapeDisplay ld;
 
     /**
@@ -21,8 +20,7 @@ public class Sudoku {
      * locked cells.
      */
     public Sudoku() {
-        this.sudokuBoard = new Board(1 + rand.nextInt(30));
-        ld = new LandscapeDisplay(sudokuBoard);
+        super(new Board(1 + rand.nextInt(30)));
     }
 
     /**
@@ -32,8 +30,7 @@ public class Sudoku {
      * @param specifiedVals Number of cells to be pre-filled (locked).
      */
     public Sudoku(int specifiedVals) {
-        this.sudokuBoard = new Board(specifiedVals);
-        ld = new LandscapeDisplay(sudokuBoard);
+        super(new Board(specifiedVals));
     }
 
     /**
@@ -42,104 +39,32 @@ public class Sudoku {
      * @param filename Path to the file containing the initial board setup.
      */
     public Sudoku(String filename) {
-        this.sudokuBoard = new Board(filename);
-        ld = new LandscapeDisplay(sudokuBoard);
+        super(new Board(filename));
     }
 
     /**
-     * Finds the next valid value for a cell, starting from the current cell value +
-     * 1.
+     * Constructor that solves the given board in place.
      * 
-     * @param cell The cell for which to find the next valid value.
-     * @return The next valid value or 0 if no valid values are found.
+     * @param board The board to solve.
      */
-    public int findNextValue(Cell cell) {
-        int currVal = cell.getValue() + 1;
-        while (currVal <= 9) {
-            if (this.sudokuBoard.validValue(cell.getRow(), cell.getCol(), currVal)) {
-                return currVal;
-            }
-            currVal++;
-        }
-        return 0;
-    }
-
-    /**
-     * Finds the next cell on the board that is empty.
-     * 
-     * @return The next empty cell or null if all cells are filled.
-     */
-    public Cell findNextCell() {
-        for (int i = 0; i < Board.SIZE; i++) {
-            for (int j = 0; j < Board.SIZE; j++) {
-                if (sudokuBoard.get(i, j).getValue() == 0) {
-                    int newVal = findNextValue(sudokuBoard.get(i, j));
-                    if (newVal != 0) {
-                        sudokuBoard.get(i, j).setValue(newVal);
-                        return sudokuBoard.get(i, j);
-                    }
-                    return null;
-                }
-            }
-        }
-        return null;
-
+    public Sudoku(Board board) {
+        super(board);
     }
 
     /**
-     * Attempts to solve the Sudoku puzzle.
+     * Opens a window showing the board and registers it as the solve listener,
+     * repainting at most every ThrottledListener.DISPLAY_INTERVAL_MILLIS.
+     * Solvers are headless until this is called, so constructing and solving
+     * never touches AWT.
      * 
-     * @return True if the puzzle is solved successfully, false otherwise.
+     * @return The display, already visible.
      */
-    public boolean solve() {
-        Stack<Cell> solutions = new LinkedList<Cell>();
-        int unspecifiedCells = (Board.SIZE * Board.SIZE) - this.sudokuBoard.numLocked();
-        int delay = 0;
-
-        while (solutions.size() < unspecifiedCells) {
-
-            if (delay > 0) {
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-
-            if (ld != null) {
-                ld.repaint();
-            }
-
-            Cell next = findNextCell();
-            while (next == null && !solutions.isEmpty()) {
-
-                if (delay > 0) {
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-                if (ld != null) {
-                    ld.repaint();
-                }
-                Cell tempCell = solutions.pop();
-                tempCell.setValue(findNextValue(tempCell));
-                if (tempCell.getValue() != 0) {
-                    next = tempCell;
-                }
-            }
-
-            if (next == null) {
-                return false;
-            } else {
-                solutions.push(next);
-            }
+    public LandscapeDisplay attachDisplay() {
+        if (ld == null) {
+            ld = new LandscapeDisplay(sudokuBoard);
+            setSolveListener(ThrottledListener.atMostEvery(ld, ThrottledListener.DISPLAY_INTERVAL_MILLIS));
         }
-
-        sudokuBoard.finished = true;
-        return true;
-
+        return ld;
     }
 
     /**
@@ -148,6 +73,7 @@ public class Sudoku {
     public static void main(String[] args) {
         System.out.println("Test 1: Empty Board");
         Sudoku sudokuEmpty = new Sudoku("board2.txt");
+        sudokuEmpty.attachDisplay();
         System.out.println("Initial Board:");
         System.out.println(sudokuEmpty.sudokuBoard);
         if (sudokuEmpty.solve()) {
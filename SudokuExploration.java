@@ -13,39 +13,55 @@ public class SudokuExploration {
 
     /**
      * Main method to conduct the experiment of solving Sudoku puzzles with
-     * different initial values.
+     * different initial values. Every board is solved once per cell ordering so
+     * the orderings are compared on the same puzzles, and every solve is
+     * stopped at TIMEOUT_MS. The search statistics of each case are printed
+     * summed over its trials.
      */
     public static void main(String[] args) {
         int[] initialValuesCounts = { 10, 20, 30, 40 };
         int trialsPerCase = 5;
+        CellOrder[] orders = CellOrder.values();
 
         for (int initialValuesCount : initialValuesCounts) {
-            int solvedCount = 0;
-            long totalSolveTime = 0;
+            int[] solvedCount = new int[orders.length];
+            long[] totalSolveTime = new long[orders.length];
+            long[] totalNodes = new long[orders.length];
+            SolveStats[] totalStats = new SolveStats[orders.length];
+            for (int k = 0; k < orders.length; k++) {
+                totalStats[k] = new SolveStats();
+            }
 
             for (int trial = 0; trial < trialsPerCase; trial++) {
-                Sudoku sudoku = new Sudoku(initialValuesCount);
-                long startTime = System.currentTimeMillis();
-                boolean solved = false;
+                Board puzzle = new Board(initialValuesCount);
 
-                solved = sudoku.solve();
-                long endTime = System.currentTimeMillis();
-                long duration = endTime - startTime;
+                for (int k = 0; k < orders.length; k++) {
+                    Sudoku sudoku = new Sudoku(new Board(puzzle));
+                    sudoku.setCellOrder(orders[k]);
+                    sudoku.setStatistics(true);
+                    long startTime = System.currentTimeMillis();
+                    SolveOutcome outcome = sudoku.solve(TIMEOUT_MS, SearchBudget.NO_LIMIT);
+                    long duration = System.currentTimeMillis() - startTime;
 
-                if (duration < TIMEOUT_MS) {
-                    if (solved) {
-                        solvedCount++;
+                    if (outcome == SolveOutcome.SOLVED) {
+                        solvedCount[k]++;
+                    } else if (outcome == SolveOutcome.TIMED_OUT) {
+                        System.out.println("Timeout reached for trial " + (trial + 1) + " with " + initialValuesCount
+                                + " initial values (" + orders[k] + ").");
                     }
-                } else {
-                    System.out.println("Timeout reached for trial " + (trial + 1) + " with " + initialValuesCount
-                            + " initial values.");
-                }
 
-                totalSolveTime += Math.min(duration, TIMEOUT_MS);
+                    totalSolveTime[k] += duration;
+                    totalNodes[k] += sudoku.getNodeCount();
+                    totalStats[k].add(sudoku.getStatistics());
+                }
             }
 
-            System.out.println("Initial Values: " + initialValuesCount + ", Solved: " + solvedCount +
-                    "/" + trialsPerCase + ", Avg Time: " + (totalSolveTime / trialsPerCase) + "ms");
+            for (int k = 0; k < orders.length; k++) {
+                System.out.println("Initial Values: " + initialValuesCount + ", Order: " + orders[k] + ", Solved: "
+                        + solvedCount[k] + "/" + trialsPerCase + ", Avg Time: " + (totalSolveTime[k] / trialsPerCase)
+                        + "ms, Avg Nodes: " + (totalNodes[k] / trialsPerCase));
+                System.out.println("    Totals: " + totalStats[k]);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -6,22 +6,35 @@
   Name: SudokuExtension.java
 
   Purpose: Extends the Sudoku solving functionality to support custom board sizes and provide a visual display.
+  Runs the GridSolver search on whichever Grid suits the size, and adds a parallel search.
 */
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class SudokuExtension {
-    protected BoardExtension sudokuBoard;
-    private Random rand = new Random();
+public class SudokuExtension extends GridSolver<Grid> {
+    private static final Random rand = new Random();
     private LandscapeDisplayExtension ld;
     private final int gridScale = 30;
 
     /**
-     * Constructor for creating a Sudoku puzzle of a specified size.
+     * Number of subtasks per worker thread that solveParallel() aims for when
+     * splitting the top of the search tree, so work stealing has enough pieces
+     * to even out branches of very different sizes.
+     */
+    public static final int TASKS_PER_THREAD = 16;
+
+    /**
+     * Constructor for creating a Sudoku puzzle of a specified size. 9x9
+     * puzzles get the specialized Board, see Grid.create.
      */
     public SudokuExtension(int size) {
-        this.sudokuBoard = new BoardExtension(size);
-        ld = new LandscapeDisplayExtension(sudokuBoard, gridScale); // Include gridScale
+        super(Grid.create(size));
     }
 
     /**
@@ -29,8 +42,8 @@ public class SudokuExtension {
      * set values.
      */
     public SudokuExtension(int size, int specifiedVals) {
-        this.sudokuBoard = new BoardExtension(size, specifiedVals);
-        ld = new LandscapeDisplayExtension(sudokuBoard, gridScale); // Include gridScale
+        super(Grid.create(size));
+        sudokuBoard.load(GridGenerator.puzzle(size, specifiedVals, rand));
     }
 
     /**
@@ -38,94 +51,178 @@ public class SudokuExtension {
      * be loaded from external sources.
      */
     public SudokuExtension(String filename, int size) {
-        this.sudokuBoard = new BoardExtension(size);
-        this.sudokuBoard.read(filename);
-        ld = new LandscapeDisplayExtension(sudokuBoard, gridScale); // Include gridScale
+        super(Grid.create(size));
+        sudokuBoard.read(filename);
     }
 
     /**
-     * Finds the next possible valid value for a given cell.
+     * Constructor for solving an existing board of any size in place.
      */
-    public int findNextValue(Cell cell) {
-        int currVal = cell.getValue() + 1;
-        while (currVal <= sudokuBoard.getSize()) {
-            if (sudokuBoard.validValue(cell.getRow(), cell.getCol(), currVal)) {
-                return currVal;
-            }
-            currVal++;
+    public SudokuExtension(Grid board) {
+        super(board);
+    }
+
+    /**
+     * Constructor for the solvers solveParallel() runs on board copies. They
+     * stop as soon as {@code cancelled} is set.
+     */
+    private SudokuExtension(Grid board, AtomicBoolean cancelled) {
+        super(board);
+        setCancelled(cancelled);
+    }
+
+    /**
+     * Opens a window showing the board and registers it as the solve listener,
+     * repainting at most every ThrottledListener.DISPLAY_INTERVAL_MILLIS.
+     * Solvers are headless until this is called, so constructing and solving
+     * never touches AWT.
+     */
+    public LandscapeDisplayExtension attachDisplay() {
+        if (ld == null) {
+            ld = new LandscapeDisplayExtension(sudokuBoard, gridScale);
+            setSolveListener(ThrottledListener.atMostEvery(ld, ThrottledListener.DISPLAY_INTERVAL_MILLIS));
         }
-        return 0;
+        return ld;
     }
 
     /**
-     * Identifies the next cell in the Sudoku grid that needs to be filled.
+     * Solves the puzzle on a ForkJoinPool as an alternative to solve(). The top
+     * levels of the search tree are split into subtasks, one per value of the
+     * most constrained cell, until there are about TASKS_PER_THREAD subtasks
+     * per thread; each subtask then runs the sequential search on its own copy
+     * of the board, with this solver's cell order and propagation settings.
+     * The first subtask to find a solution cancels the rest, and the solution
+     * is copied back onto this board. Boards larger than
+     * BoardExtension.MAX_MASK_SIZE are solved sequentially by solve().
+     * 
+     * @param parallelism the number of worker threads
+     * @return true if the puzzle was solved, false if it has no solution
      */
-    public Cell findNextCell() {
-        for (int i = 0; i < sudokuBoard.getSize(); i++) {
-            for (int j = 0; j < sudokuBoard.getSize(); j++) {
-                if (sudokuBoard.get(i, j).getValue() == 0) {
-                    int newVal = findNextValue(sudokuBoard.get(i, j));
-                    if (newVal != 0) {
-                        sudokuBoard.get(i, j).setValue(newVal);
-                        return sudokuBoard.get(i, j);
-                    }
-                    return null;
-                }
+    public boolean solveParallel(int parallelism) {
+        if (sudokuBoard.getSize() > BoardExtension.MAX_MASK_SIZE) {
+            return solve();
+        }
+        AtomicBoolean found = new AtomicBoolean();
+        AtomicLong nodes = new AtomicLong();
+        SearchTask root = new SearchTask(sudokuBoard.copy(), 1, parallelism * TASKS_PER_THREAD, found,
+                nodes);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Grid solution;
+        try {
+            solution = pool.invoke(root);
+        } finally {
+            pool.shutdown();
+        }
+        setNodeCount(nodes.get());
+        if (solution == null) {
+            return false;
+        }
+        int size = sudokuBoard.getSize();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                sudokuBoard.set(row, col, solution.value(row, col));
             }
         }
-        return null;
+        sudokuBoard.setFinished(true);
+        return true;
     }
 
     /**
-     * Attempts to solve the Sudoku puzzle using a backtracking algorithm.
+     * One piece of the search tree for solveParallel(): a board copy with the
+     * guesses leading to it filled in and locked.
      */
-    public boolean solve() {
-        Stack<Cell> solutions = new LinkedList<>();
-        int unspecifiedCells = (sudokuBoard.getSize() * sudokuBoard.getSize()) - sudokuBoard.numLocked();
-        System.out.println(unspecifiedCells);
-        int delay = 0;
-
-        while (solutions.size() < unspecifiedCells) {
-            if (delay > 0) {
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
+    private class SearchTask extends RecursiveTask<Grid> {
+        private static final long serialVersionUID = 1L;
+
+        private final Grid board;
+        private final int width;
+        private final int targetWidth;
+        private final AtomicBoolean found;
+        private final AtomicLong nodes;
+
+        /**
+         * @param width the number of subtasks at this task's depth, estimated as
+         *              the product of the branching factors above it
+         */
+        SearchTask(Grid board, int width, int targetWidth, AtomicBoolean found, AtomicLong nodes) {
+            this.board = board;
+            this.width = width;
+            this.targetWidth = targetWidth;
+            this.found = found;
+            this.nodes = nodes;
+        }
 
-            if (ld != null) {
-                ld.repaint();
+        protected Grid compute() {
+            if (found.get()) {
+                return null;
+            }
+            SudokuExtension worker = worker(board);
+            if (width >= targetWidth) {
+                return search(worker);
             }
 
-            Cell next = findNextCell();
-            while (next == null && !solutions.isEmpty()) {
-                if (delay > 0) {
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-                if (ld != null) {
-                    ld.repaint();
-                }
-                Cell tempCell = solutions.pop();
-                tempCell.setValue(findNextValue(tempCell));
-                if (tempCell.getValue() != 0) {
-                    next = tempCell;
+            // fill the next cell with its first value to learn which cell that
+            // is, then branch on each of its values
+            int next = worker.nextCell();
+            if (next < 0) {
+                return search(worker);
+            }
+            int size = board.getSize();
+            int row = next / size;
+            int col = next % size;
+            List<Integer> values = new ArrayList<Integer>();
+            for (int value = board.value(row, col); value != 0; value = worker.findNextValue(row, col)) {
+                values.add(value);
+                board.set(row, col, value);
+            }
+            board.set(row, col, 0);
+            nodes.addAndGet(values.size());
+
+            List<SearchTask> subtasks = new ArrayList<SearchTask>();
+            for (int value : values) {
+                Grid child = board.copy();
+                child.set(row, col, value);
+                child.set(row, col, true);
+                subtasks.add(new SearchTask(child, width * values.size(), targetWidth, found, nodes));
+            }
+            for (int i = subtasks.size() - 1; i > 0; i--) {
+                subtasks.get(i).fork();
+            }
+            Grid solution = subtasks.isEmpty() ? null : subtasks.get(0).compute();
+            for (int i = 1; i < subtasks.size(); i++) {
+                Grid result = subtasks.get(i).join();
+                if (solution == null) {
+                    solution = result;
                 }
             }
+            return solution;
+        }
 
-            if (next == null) {
-                return false;
-            } else {
-                solutions.push(next);
+        /**
+         * Runs the sequential search on this task's board.
+         */
+        private Grid search(SudokuExtension worker) {
+            boolean solved = worker.solve();
+            nodes.addAndGet(worker.getNodeCount());
+            if (solved && found.compareAndSet(false, true)) {
+                return board;
             }
+            return null;
         }
 
-        sudokuBoard.finished = true;
-        return true;
+        /**
+         * Creates a solver for the board with the settings of the solver that
+         * started solveParallel().
+         */
+        private SudokuExtension worker(Grid board) {
+            SudokuExtension worker = new SudokuExtension(board, found);
+            worker.setCellOrder(getCellOrder());
+            if (getPropagator() != null) {
+                worker.setPropagation(true);
+                getPropagator().copyRulesTo(worker.getPropagator());
+            }
+            return worker;
+        }
     }
 
     /**
@@ -136,6 +233,7 @@ public class SudokuExtension {
         int perfSquare = Integer.parseInt(args[0]);
         int start_vals = Integer.parseInt(args[1]);
         SudokuExtension sudokuEmpty = new SudokuExtension(perfSquare, start_vals);
+        sudokuEmpty.attachDisplay();
         System.out.println("Initial Board:");
         System.out.println(sudokuEmpty.sudokuBoard);
         if (sudokuEmpty.solve()) {
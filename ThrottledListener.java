@@ -0,0 +1,95 @@
+/*
+  Author: Vishnu Varadhan
+
+  Date: 4/3/2024
+
+  Name: ThrottledListener.java
+
+  Purpose: Passes only a sample of a solve's steps on to another listener, so a display repaints at a
+  sensible rate instead of on every guess.
+*/
+
+public class ThrottledListener implements SolveListener {
+
+    /**
+     * Time limit the solvers use for an attached display: about 50 repaints a
+     * second, as smooth as the eye can follow.
+     */
+    public static final long DISPLAY_INTERVAL_MILLIS = 20;
+
+    private SolveListener target;
+    private long everySteps;
+    private long intervalNanos;
+
+    private long lastStep;
+    private long lastTime;
+
+    /**
+     * Creates a listener passing on a step once {@code everySteps} steps have
+     * passed since the last one it passed on, or once {@code intervalMillis}
+     * milliseconds have, whichever comes first. A limit of 0 disables it. Start
+     * and finish are always passed on.
+     * 
+     * @param target         the listener to pass steps on to
+     * @param everySteps     the step limit, or 0 for none
+     * @param intervalMillis the time limit in milliseconds, or 0 for none
+     */
+    public ThrottledListener(SolveListener target, long everySteps, long intervalMillis) {
+        if (everySteps <= 0 && intervalMillis <= 0) {
+            throw new IllegalArgumentException("Need a step or time limit.");
+        }
+        this.target = target;
+        this.everySteps = everySteps;
+        this.intervalNanos = intervalMillis * 1000000L;
+    }
+
+    /**
+     * Creates a listener passing on every {@code n}th step.
+     * 
+     * @param target the listener to pass steps on to
+     * @param n      the number of steps between calls
+     * @return the throttled listener
+     */
+    public static ThrottledListener everySteps(SolveListener target, long n) {
+        return new ThrottledListener(target, n, 0);
+    }
+
+    /**
+     * Creates a listener passing on a step at most every {@code millis}
+     * milliseconds.
+     * 
+     * @param target the listener to pass steps on to
+     * @param millis the minimum time between calls
+     * @return the throttled listener
+     */
+    public static ThrottledListener atMostEvery(SolveListener target, long millis) {
+        return new ThrottledListener(target, 0, millis);
+    }
+
+    public void solveStarted(Grid grid) {
+        lastStep = 0;
+        lastTime = System.nanoTime();
+        target.solveStarted(grid);
+    }
+
+    public void stepTaken(Grid grid, long steps) {
+        if (everySteps > 0 && steps - lastStep >= everySteps) {
+            pass(grid, steps);
+        } else if (intervalNanos > 0 && System.nanoTime() - lastTime >= intervalNanos) {
+            pass(grid, steps);
+        }
+    }
+
+    public void solveFinished(Grid grid, boolean solved) {
+        target.solveFinished(grid, solved);
+    }
+
+    /**
+     * Passes a step on and restarts both limits.
+     */
+    private void pass(Grid grid, long steps) {
+        lastStep = steps;
+        lastTime = System.nanoTime();
+        target.stepTaken(grid, steps);
+    }
+}